@@ -0,0 +1,262 @@
+package com.poli.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.poli.pojo.Product;
+import com.poli.pojo.ProductSold;
+import com.poli.pojo.Sale;
+import com.poli.pojo.Salesman;
+import com.poli.service.FileManager;
+import com.poli.service.IncrementalProcessor;
+import com.poli.service.IngestionOptions;
+import com.poli.service.ProductCatalog;
+import com.poli.service.SalesAggregate;
+import com.poli.service.SalesTable;
+import com.poli.service.SalesmanDirectory;
+import com.poli.service.ScaleGenerator;
+
+/**
+ * The FileManagerBenchmark class measures the ingestion and reporting paths of
+ * {@link FileManager}. Every combination of catalog size, number of salesmen
+ * and lines per file is generated once with a fixed seed, so the inputs are the
+ * same on every run and every machine. Run it with {@code -prof gc} to get the
+ * allocation rates next to the throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileManagerBenchmark {
+    private static final long SEED = 42;
+
+    @Param({ "1000", "100000" })
+    private int productCount;
+
+    @Param({ "100", "1000" })
+    private int salesmanCount;
+
+    @Param({ "100", "1000" })
+    private int linesPerFile;
+
+    private final FileManager fileManager = new FileManager();
+    private Path folder;
+    private String productsPath;
+    private String salesmenInfoPath;
+    private String salesPath;
+    private String salesmenReportPath;
+    private String productsReportPath;
+    private Path statePath;
+    private List<Product> products;
+    private List<Salesman> salesmen;
+    private ProductCatalog catalog;
+    private SalesmanDirectory directory;
+    private List<Sale> sales;
+
+    /**
+     * Generates the input files and reads them once, so every benchmark starts
+     * from the inputs it needs.
+     *
+     * @throws IOException if the files cannot be generated
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        folder = Files.createTempDirectory("file_manager_benchmark");
+        new ScaleGenerator(SEED).setOutputFolder(folder.toString()).setProductCount(productCount)
+                .setSalesmanCount(salesmanCount).setLinesPerSalesman(linesPerFile).generate();
+        productsPath = folder.resolve("info/products.csv").toString();
+        salesmenInfoPath = folder.resolve("info/salesmen_info.csv").toString();
+        salesPath = folder.resolve("salesmen").toString();
+        salesmenReportPath = folder.resolve("reports/salesmen_report.csv").toString();
+        productsReportPath = folder.resolve("reports/products_report.csv").toString();
+        statePath = folder.resolve("state/sales_state.bin");
+
+        products = fileManager.readFileWithInformationOnAvailableProducts(productsPath);
+        salesmen = fileManager.readInformationSalesmanFile(salesmenInfoPath);
+        catalog = new ProductCatalog(products);
+        directory = new SalesmanDirectory(salesmen);
+        sales = fileManager.readSalesInformationFile(salesPath, products, salesmen);
+    }
+
+    /**
+     * Deletes the generated files.
+     *
+     * @throws IOException if a file cannot be deleted
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(folder)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    /**
+     * Reads the information of the salesmen.
+     *
+     * @return the salesmen
+     */
+    @Benchmark
+    public List<Salesman> readInformationSalesmanFile() {
+        return fileManager.readInformationSalesmanFile(salesmenInfoPath);
+    }
+
+    /**
+     * Reads the catalog of products.
+     *
+     * @return the products
+     */
+    @Benchmark
+    public List<Product> readFileWithInformationOnAvailableProducts() {
+        return fileManager.readFileWithInformationOnAvailableProducts(productsPath);
+    }
+
+    /**
+     * Reads every sales file into a list of sales.
+     *
+     * @return the sales
+     */
+    @Benchmark
+    public List<Sale> readSalesInformationFile() {
+        return fileManager.readSalesInformationFile(salesPath, products, salesmen);
+    }
+
+    /**
+     * Reads every sales file into a columnar table of sales lines.
+     *
+     * @return the sales lines
+     */
+    @Benchmark
+    public SalesTable readSalesTable() {
+        return fileManager.readSalesTable(salesPath, catalog, directory);
+    }
+
+    /**
+     * Streams every sales file, one after the other, into the totals of salesmen
+     * and products.
+     *
+     * @return the totals
+     */
+    @Benchmark
+    public SalesAggregate aggregateSalesInformationFile() {
+        return fileManager.aggregateSalesInformationFile(salesPath, catalog, directory);
+    }
+
+    /**
+     * Reads every sales file in parallel into the totals of salesmen and products
+     * and saves the state, the path used by {@code Main} on its first run.
+     *
+     * @param coldState deletes the state before every invocation
+     * @return the totals
+     */
+    @Benchmark
+    public SalesAggregate updateFromColdState(ColdState coldState) {
+        return new IncrementalProcessor(fileManager, statePath.toString(), new IngestionOptions()).update(salesPath,
+                catalog, directory);
+    }
+
+    /**
+     * Checks every sales file against a saved state in which none of them
+     * changed, the path used by {@code Main} on every later run: the state is
+     * loaded, every file is only compared by size and modification time, and
+     * the state is saved again. Compare it with {@link #updateFromColdState}.
+     *
+     * @param warmState saves the state once before the measurements
+     * @return the totals
+     */
+    @Benchmark
+    public SalesAggregate updateFromWarmState(WarmState warmState) {
+        return new IncrementalProcessor(fileManager, warmState.statePath.toString(), new IngestionOptions())
+                .update(salesPath, catalog, directory);
+    }
+
+    /**
+     * Computes the quantity sold of every product.
+     *
+     * @return the products sold
+     */
+    @Benchmark
+    public List<ProductSold> generateProductSoldList() {
+        return fileManager.generateProductSoldList(sales, products);
+    }
+
+    /**
+     * Writes the report of salesmen.
+     */
+    @Benchmark
+    public void writeSalesMenReport() {
+        fileManager.writeSalesMenReport(sales, salesmenReportPath);
+    }
+
+    /**
+     * Writes the report of products.
+     */
+    @Benchmark
+    public void writeProductsReport() {
+        fileManager.writeProductsReport(sales, products, productsReportPath);
+    }
+
+    /**
+     * The ColdState class deletes the state of the incremental processor before
+     * every invocation of the benchmarks that use it, so every update starts
+     * cold.
+     */
+    @State(Scope.Benchmark)
+    public static class ColdState {
+        /**
+         * Deletes the state of the incremental processor.
+         *
+         * @param benchmark the benchmark holding the path of the state
+         * @throws IOException if the state cannot be deleted
+         */
+        @Setup(Level.Invocation)
+        public void deleteState(FileManagerBenchmark benchmark) throws IOException {
+            Files.deleteIfExists(benchmark.statePath);
+        }
+    }
+
+    /**
+     * The WarmState class saves a state of the incremental processor for every
+     * sales file before the measurements of the benchmarks that use it, so every
+     * update finds all the files unchanged. It has its own path, so deleting the
+     * cold state does not affect it.
+     */
+    @State(Scope.Benchmark)
+    public static class WarmState {
+        private Path statePath;
+
+        /**
+         * Reads every sales file once and saves the state.
+         *
+         * @param benchmark the benchmark holding the inputs
+         */
+        @Setup(Level.Trial)
+        public void saveState(FileManagerBenchmark benchmark) {
+            statePath = benchmark.folder.resolve("state/warm_sales_state.bin");
+            new IncrementalProcessor(benchmark.fileManager, statePath.toString(), new IngestionOptions())
+                    .update(benchmark.salesPath, benchmark.catalog, benchmark.directory);
+        }
+    }
+}
@@ -0,0 +1,455 @@
+package com.poli.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.poli.service.FileManager;
+import com.poli.service.IncrementalProcessor;
+import com.poli.service.IngestionOptions;
+import com.poli.service.ProductCatalog;
+import com.poli.service.QuarantineFile;
+import com.poli.service.SalesAggregate;
+import com.poli.service.SalesmanDirectory;
+import com.poli.service.ScaleGenerator;
+import com.poli.service.WorkloadProfile;
+
+/**
+ * The PipelineBenchmarkRunner class measures the whole pipeline end to end:
+ * it generates a dataset of the requested size with {@link ScaleGenerator} and
+ * runs the stages of {@code Main} on it several times in the same JVM, through
+ * the same {@link FileManager} entry points: the indexed catalog and directory,
+ * the incremental processor from an empty state, the concurrent writing of
+ * both reports, and a quarantine file for the rejected lines. The first run is
+ * cold, the median of the following runs is warm.
+ * <p>
+ * The dataset is generated in a new temporary folder unless {@code --folder}
+ * is given, in which case the sales files already in it are deleted first.
+ * <p>
+ * For every stage it records the wall time, rows and megabytes per second, the
+ * peak heap, the peak resident set size of the process (Linux only) and the
+ * number and time of the garbage collections, and writes them as JSON. With
+ * {@code --cube true} the ingestion also builds a {@link com.poli.service.SalesCube}
+ * and the best products of every salesman are written from it. Given a
+ * baseline written by a previous run, it exits with status 1 when the warm time
+ * of a stage grew by more than the threshold. The collections are summed over
+ * all the runs of a stage.
+ * <p>
+ * Run it from the shaded jar of the benchmarks module:
+ *
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.poli.benchmark.PipelineBenchmarkRunner \
+ *     --salesmen 100000 --products 100000 --lines 100 --warm 3 \
+ *     --output result.json --baseline baseline.json --threshold 10
+ * </pre>
+ */
+public class PipelineBenchmarkRunner {
+    private static final Logger LOGGER = Logger.getLogger(PipelineBenchmarkRunner.class.getName());
+    private static final Pattern STAGE_LINE = Pattern
+            .compile("\"name\": \"(\\w+)\".*\"(warm|cold)Millis\": ([0-9.]+)");
+
+    private final FileManager fileManager = new FileManager();
+    private final Map<String, Stage> stages = new LinkedHashMap<>();
+    private Path folder;
+    private int salesmanCount = 10000;
+    private int productCount = 10000;
+    private int linesPerSalesman = 100;
+    private String profileName = "uniform";
+    private long seed = 42;
+    private int warmRuns = 3;
+    private Path outputPath = Path.of("pipeline-benchmark.json");
+    private Path baselinePath;
+    private double thresholdPercent = 10;
+    private boolean cube;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args the command line arguments: {@code --folder DIR},
+     *             {@code --salesmen N}, {@code --products N}, {@code --lines N},
+     *             {@code --profile NAME}, {@code --seed N}, {@code --warm N},
+     *             {@code --output FILE}, {@code --baseline FILE},
+     *             {@code --threshold PERCENT} and {@code --cube true|false}
+     * @throws Exception if the dataset cannot be generated or a stage fails
+     */
+    public static void main(String[] args) throws Exception {
+        PipelineBenchmarkRunner runner = new PipelineBenchmarkRunner();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            runner.setOption(args[i], args[i + 1]);
+        }
+        if (args.length % 2 != 0) {
+            throw new IllegalArgumentException("Missing value of " + args[args.length - 1]);
+        }
+        if (!runner.run()) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Sets one option of the command line.
+     */
+    private void setOption(String name, String value) {
+        switch (name) {
+            case "--folder":
+                folder = Path.of(value);
+                break;
+            case "--salesmen":
+                salesmanCount = Integer.parseInt(value);
+                break;
+            case "--products":
+                productCount = Integer.parseInt(value);
+                break;
+            case "--lines":
+                linesPerSalesman = Integer.parseInt(value);
+                break;
+            case "--profile":
+                profileName = value;
+                break;
+            case "--seed":
+                seed = Long.parseLong(value);
+                break;
+            case "--warm":
+                warmRuns = Integer.parseInt(value);
+                break;
+            case "--output":
+                outputPath = Path.of(value);
+                break;
+            case "--baseline":
+                baselinePath = Path.of(value);
+                break;
+            case "--threshold":
+                thresholdPercent = Double.parseDouble(value);
+                break;
+            case "--cube":
+                cube = Boolean.parseBoolean(value);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown argument " + name);
+        }
+    }
+
+    /**
+     * Generates the dataset, runs the pipeline and compares the results with the
+     * baseline.
+     *
+     * @return false if a stage regressed beyond the threshold
+     */
+    private boolean run() throws Exception {
+        if (folder == null) {
+            folder = Files.createTempDirectory("pipeline-benchmark");
+        } else {
+            // Sales files of a previous, larger dataset would otherwise be read as well
+            deleteFiles(folder.resolve("salesmen"));
+        }
+        LOGGER.log(Level.INFO, "Generating the dataset in {0}", folder);
+        Stage generate = stage("generate");
+        long lines = measure(generate, () -> new ScaleGenerator(seed).setOutputFolder(folder.toString())
+                .setSalesmanCount(salesmanCount).setProductCount(productCount).setLinesPerSalesman(linesPerSalesman)
+                .setProfile(WorkloadProfile.named(profileName)).generate());
+        generate.rows = productCount + salesmanCount + lines;
+        generate.bytes = sizeOf(folder.resolve("info")) + sizeOf(folder.resolve("salesmen"));
+
+        try (QuarantineFile quarantine = new QuarantineFile(folder.resolve("quarantine/rejected_lines.csv"))) {
+            fileManager.setQuarantine(quarantine);
+            for (int run = 0; run <= warmRuns; run++) {
+                runPipeline();
+                LOGGER.log(Level.INFO, "Pipeline run {0} of {1} finished", new Object[] { run + 1, warmRuns + 1 });
+            }
+        } finally {
+            fileManager.setQuarantine(null);
+        }
+
+        String json = toJson();
+        Files.writeString(outputPath, json, StandardCharsets.UTF_8);
+        LOGGER.log(Level.INFO, "Results written to {0}", outputPath);
+        return baselinePath == null || compareWithBaseline();
+    }
+
+    /**
+     * Runs the stages of {@code Main} once, from a fresh state so every file is
+     * ingested.
+     */
+    private void runPipeline() throws Exception {
+        Path products = folder.resolve("info/products.csv");
+        Path salesmen = folder.resolve("info/salesmen_info.csv");
+        Path statePath = folder.resolve("state/pipeline_benchmark_state.bin");
+        Path salesmenReport = folder.resolve("reports/salesmen_report.csv");
+        Path productsReport = folder.resolve("reports/products_report.csv");
+        Path salesmanProductsReport = folder.resolve("reports/salesman_products_report.csv");
+
+        Stage catalogLoad = stage("catalogLoad");
+        Object[] catalogs = measure(catalogLoad, () -> new Object[] {
+                fileManager.loadSalesmanDirectory(salesmen.toString()),
+                fileManager.loadProductCatalog(products.toString()) });
+        SalesmanDirectory directory = (SalesmanDirectory) catalogs[0];
+        ProductCatalog catalog = (ProductCatalog) catalogs[1];
+        catalogLoad.rows = catalog.size() + directory.size();
+        catalogLoad.bytes = Files.size(products) + Files.size(salesmen);
+
+        Files.deleteIfExists(statePath);
+        Stage ingest = stage("ingest");
+        SalesAggregate aggregate = measure(ingest, () -> new IncrementalProcessor(fileManager,
+                statePath.toString(), new IngestionOptions().setCubeEnabled(cube))
+                .update(folder.resolve("salesmen").toString(), catalog, directory));
+        ingest.rows = 0;
+        for (int i = 0; i < aggregate.getSalesmanCount(); i++) {
+            ingest.rows += aggregate.getSalesmanLines(i);
+        }
+        ingest.bytes = sizeOf(folder.resolve("salesmen"));
+
+        Stage reports = stage("writeReports");
+        measure(reports, () -> {
+            fileManager.writeReports(aggregate, salesmenReport.toString(), productsReport.toString(),
+                    Integer.MAX_VALUE);
+            return null;
+        });
+        reports.rows = aggregate.getSalesmanCount() + aggregate.getProductCount();
+        reports.bytes = Files.size(salesmenReport) + Files.size(productsReport);
+
+        if (cube) {
+            Stage cubeStage = stage("writeSalesmanProductsReport");
+            measure(cubeStage, () -> {
+                fileManager.writeSalesmanProductsReport(aggregate, salesmanProductsReport.toString(), 10);
+                return null;
+            });
+            cubeStage.rows = aggregate.getCube().getCellCount();
+            cubeStage.bytes = Files.size(salesmanProductsReport);
+        }
+    }
+
+    /**
+     * Runs a stage and records its wall time, peak memory and collections.
+     */
+    private <T> T measure(Stage stage, Callable<T> action) throws Exception {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            pool.resetPeakUsage();
+        }
+        resetPeakRss();
+        long collections = totalCollections();
+        long collectionMillis = totalCollectionMillis();
+        long start = System.nanoTime();
+        T result = action.call();
+        stage.millis.add((System.nanoTime() - start) / 1e6);
+        stage.gcPauses += totalCollections() - collections;
+        stage.gcPauseMillis += totalCollectionMillis() - collectionMillis;
+
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peakHeap += pool.getPeakUsage().getUsed();
+            }
+        }
+        stage.peakHeapBytes = Math.max(stage.peakHeapBytes, peakHeap);
+        stage.peakRssBytes = Math.max(stage.peakRssBytes, peakRss());
+        return result;
+    }
+
+    /**
+     * Returns the stage with the given name, creating it the first time.
+     */
+    private Stage stage(String name) {
+        return stages.computeIfAbsent(name, Stage::new);
+    }
+
+    /**
+     * Compares the warm times with the baseline, or the cold times of the stages
+     * that only run once.
+     *
+     * @return false if a stage regressed beyond the threshold
+     */
+    private boolean compareWithBaseline() throws IOException {
+        Map<String, Double> baseline = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(baselinePath, StandardCharsets.UTF_8)) {
+            Matcher matcher = STAGE_LINE.matcher(line);
+            if (matcher.find()) {
+                baseline.put(matcher.group(1), Double.parseDouble(matcher.group(3)));
+            }
+        }
+        boolean passed = true;
+        for (Stage stage : stages.values()) {
+            Double expected = baseline.get(stage.name);
+            if (expected == null || expected == 0) {
+                continue;
+            }
+            double change = (stage.comparedMillis() - expected) / expected * 100;
+            if (change > thresholdPercent) {
+                LOGGER.severe(String.format(Locale.ROOT, "%s regressed %.1f%%: %.1f ms, baseline %.1f ms",
+                        stage.name, change, stage.comparedMillis(), expected));
+                passed = false;
+            } else {
+                LOGGER.info(String.format(Locale.ROOT, "%s changed %.1f%%: %.1f ms, baseline %.1f ms", stage.name,
+                        change, stage.comparedMillis(), expected));
+            }
+        }
+        return passed;
+    }
+
+    /**
+     * Writes the dataset, the JVM and one stage per line as JSON, so a baseline
+     * can be read back line by line.
+     */
+    private String toJson() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append(String.format(Locale.ROOT,
+                "  \"dataset\": {\"salesmen\": %d, \"products\": %d, \"linesPerSalesman\": %d, "
+                        + "\"profile\": \"%s\", \"seed\": %d, \"warmRuns\": %d},%n",
+                salesmanCount, productCount, linesPerSalesman, profileName, seed, warmRuns));
+        json.append(String.format(Locale.ROOT,
+                "  \"jvm\": {\"version\": \"%s\", \"processors\": %d, \"maxHeapBytes\": %d},%n",
+                System.getProperty("java.version"), Runtime.getRuntime().availableProcessors(),
+                Runtime.getRuntime().maxMemory()));
+        json.append("  \"stages\": [\n");
+        int index = 0;
+        for (Stage stage : stages.values()) {
+            double seconds = stage.comparedMillis() / 1000;
+            json.append(String.format(Locale.ROOT,
+                    "    {\"name\": \"%s\", \"rows\": %d, \"bytes\": %d, \"runs\": %d, \"coldMillis\": %.3f, "
+                            + "%s\"rowsPerSecond\": %.1f, \"megabytesPerSecond\": %.3f, \"peakHeapBytes\": %d, "
+                            + "\"peakRssBytes\": %d, \"gcPauses\": %d, \"gcPauseMillis\": %d}%s%n",
+                    stage.name, stage.rows, stage.bytes, stage.millis.size(), stage.millis.get(0),
+                    stage.millis.size() > 1
+                            ? String.format(Locale.ROOT, "\"warmMillis\": %.3f, ", stage.comparedMillis())
+                            : "",
+                    seconds > 0 ? stage.rows / seconds : 0, seconds > 0 ? stage.bytes / seconds / 1e6 : 0,
+                    stage.peakHeapBytes, stage.peakRssBytes, stage.gcPauses, stage.gcPauseMillis,
+                    ++index < stages.size() ? "," : ""));
+        }
+        json.append("  ]\n}\n");
+        return json.toString();
+    }
+
+    /**
+     * Deletes the files of a folder, if it exists.
+     */
+    private static void deleteFiles(Path folder) throws IOException {
+        File[] files = folder.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isFile()) {
+                    Files.delete(file.toPath());
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the total size of the files of a folder.
+     */
+    private static long sizeOf(Path folder) {
+        long size = 0;
+        File[] files = folder.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                size += file.length();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns the number of collections of every collector.
+     */
+    private static long totalCollections() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(collector.getCollectionCount(), 0);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the time spent in collections by every collector.
+     */
+    private static long totalCollectionMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(collector.getCollectionTime(), 0);
+        }
+        return millis;
+    }
+
+    /**
+     * Resets the peak resident set size of the process, where the kernel allows
+     * it.
+     */
+    private static void resetPeakRss() {
+        try {
+            Files.writeString(Path.of("/proc/self/clear_refs"), "5");
+        } catch (IOException | UnsupportedOperationException | SecurityException e) {
+            // The peak is then the peak of the whole process
+        }
+    }
+
+    /**
+     * Returns the peak resident set size of the process, or -1 if it is not
+     * known.
+     */
+    private static long peakRss() {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc/self/status"), StandardCharsets.US_ASCII)) {
+                if (line.startsWith("VmHWM:")) {
+                    return Long.parseLong(line.replaceAll("\\D", "")) * 1024;
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return -1;
+        } catch (IOException e) {
+            LOGGER.fine("The peak resident set size could not be read");
+        }
+        return -1;
+    }
+
+    /**
+     * The Stage class holds the measurements of one stage of the pipeline.
+     */
+    private static class Stage {
+        private final String name;
+        private final List<Double> millis = new ArrayList<>();
+        private long rows;
+        private long bytes;
+        private long peakHeapBytes;
+        private long peakRssBytes = -1;
+        private long gcPauses;
+        private long gcPauseMillis;
+
+        /**
+         * Creates a stage without measurements.
+         */
+        Stage(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Returns the median of the warm runs, or the cold run if it is the only
+         * one.
+         */
+        double comparedMillis() {
+            if (millis.size() == 1) {
+                return millis.get(0);
+            }
+            double[] warm = millis.subList(1, millis.size()).stream().mapToDouble(Double::doubleValue).toArray();
+            Arrays.sort(warm);
+            return warm.length % 2 == 1 ? warm[warm.length / 2]
+                    : (warm[warm.length / 2 - 1] + warm[warm.length / 2]) / 2;
+        }
+    }
+}
@@ -5,10 +5,17 @@ import java.util.logging.Logger;
 
 import com.poli.pojo.Salesman;
 import com.poli.service.GeneratorFilesTest;
+import com.poli.service.ScaleGenerator;
+import com.poli.service.WorkloadProfile;
 
 /**
  * This class is responsible for generating information files.
  * It creates salesman information files, products files, and salesmen files.
+ * With {@code --seed N} the same files are generated on every run. With
+ * {@code --scale} the files are generated in parallel at production size,
+ * sized with {@code --salesmen N}, {@code --products N}, {@code --lines N} and
+ * {@code --threads N}. With {@code --profile uniform|skewed|faulty} the sales
+ * files get hot products, heavy and tiny files or malformed lines.
  */
 public class GenerateInfoFiles {
     private static final Logger logger = Logger.getLogger(GenerateInfoFiles.class.getName());
@@ -18,10 +25,46 @@ public class GenerateInfoFiles {
      * It creates salesman information files, products files, and salesmen files.
      * It logs the success or failure of file generation.
      * 
-     * @param args The command line arguments.
+     * @param args The command line arguments, optionally {@code --seed N},
+     *             {@code --scale}, {@code --salesmen N}, {@code --products N},
+     *             {@code --lines N}, {@code --threads N} and
+     *             {@code --profile NAME}.
      */
     public static void main(String[] args) {
-        GeneratorFilesTest generator = new GeneratorFilesTest();
+        Long seed = null;
+        boolean scale = false;
+        WorkloadProfile profile = WorkloadProfile.uniform();
+        int[] sizes = { 1000000, 100000, 10, Runtime.getRuntime().availableProcessors() };
+        List<String> sizeFlags = List.of("--salesmen", "--products", "--lines", "--threads");
+        for (int i = 0; i < args.length; i++) {
+            if ("--seed".equals(args[i]) && i + 1 < args.length && args[i + 1].matches("-?\\d{1,18}")) {
+                seed = Long.parseLong(args[++i]);
+            } else if ("--profile".equals(args[i]) && i + 1 < args.length
+                    && args[i + 1].matches("uniform|skewed|faulty")) {
+                profile = WorkloadProfile.named(args[++i]);
+            } else if ("--scale".equals(args[i])) {
+                scale = true;
+            } else if (sizeFlags.contains(args[i]) && i + 1 < args.length && args[i + 1].matches("\\d{1,9}")) {
+                sizes[sizeFlags.indexOf(args[i])] = Integer.parseInt(args[++i]);
+            } else {
+                logger.severe("Unknown argument " + args[i]);
+                return;
+            }
+        }
+
+        if (scale) {
+            try {
+                new ScaleGenerator(seed == null ? System.nanoTime() : seed).setSalesmanCount(sizes[0])
+                        .setProductCount(sizes[1]).setLinesPerSalesman(sizes[2]).setParallelism(sizes[3])
+                        .setProfile(profile).generate();
+                logger.info("Files generated successfully!");
+            } catch (Exception e) {
+                logger.severe("An error occurred while creating files: " + e.getMessage());
+            }
+            return;
+        }
+
+        GeneratorFilesTest generator = seed == null ? new GeneratorFilesTest() : new GeneratorFilesTest(seed);
 
         try {
             List<Salesman> salesMen = generator.createSalesmanInfoFile(10);
@@ -31,7 +74,7 @@ public class GenerateInfoFiles {
             for (Salesman salesman : salesMen) {
                 String name = salesman.getFirstName() + "_" + salesman.getLastName();
                 generator.createSalesMenFile(10,
-                        name, salesman.getDocumentType(), salesman.getDocumentNumber());
+                        name, salesman.getDocumentType(), salesman.getDocumentNumber(), profile);
             }
 
             logger.info("Files generated successfully!");
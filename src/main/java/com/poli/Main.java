@@ -1,51 +1,209 @@
 package com.poli;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Logger;
 
-import com.poli.pojo.Product;
-import com.poli.pojo.Sale;
-import com.poli.pojo.Salesman;
+import com.poli.service.CatalogLoadEvent;
 import com.poli.service.FileManager;
+import com.poli.service.IncrementalProcessor;
+import com.poli.service.IngestionOptions;
+import com.poli.service.PipelineMetrics;
+import com.poli.service.PipelineStage;
+import com.poli.service.ProductCatalog;
+import com.poli.service.QuarantineFile;
+import com.poli.service.ReportDaemon;
+import com.poli.service.SalesAggregate;
+import com.poli.service.SalesmanDirectory;
+import com.poli.service.ShardedProcessor;
 
 /**
  * The Main class is the entry point of the application.
  * It reads information from files, processes the data, and writes reports.
+ * Started with {@code --watch} it keeps running and updates the reports every
+ * time the input folders change. With {@code --top N} the reports only list the
+ * N best salesmen and products. With {@code --sort-memory MB} the reports are
+ * sorted on disk within the given memory budget. With {@code --cube} the sales
+ * are also aggregated per pair of salesman and product, and a third report
+ * lists the best products of every salesman, up to the limit of {@code --top}.
+ * <p>
+ * The processing can also be split among several processes: every worker is
+ * started with {@code --shard I/N --partial FILE} and writes the totals of its
+ * shard to a partial file, then a coordinator started with
+ * {@code --merge FILE,FILE,...} merges them and writes the reports.
+ * <p>
+ * Lines of the input files that cannot be used are left out and appended to
+ * {@code files/quarantine/rejected_lines.csv} with their file, line number and
+ * reason.
  */
 public class Main {
     private static final Logger LOGGER = Logger.getLogger(Main.class.getName());
+    private static final Duration WATCH_DEBOUNCE = Duration.ofSeconds(2);
+    private static final Duration WATCH_MAX_LATENCY = Duration.ofSeconds(10);
+    private static final String QUARANTINE_PATH = "files/quarantine/rejected_lines.csv";
+    private static final String SALESMAN_PRODUCTS_REPORT_PATH = "files/reports/salesman_products_report.csv";
 
     /**
      * The main method is the entry point of the application.
      * It reads information from files, processes the data, and writes reports.
-     * @param args The command line arguments.
+     * @param args The command line arguments, optionally {@code --watch},
+     *             {@code --top N}, {@code --sort-memory MB}, {@code --cube},
+     *             {@code --shard I/N --partial FILE} and
+     *             {@code --merge FILE,FILE,...}.
      */
     public static void main(String[] args) {
         FileManager fileManager = new FileManager();
 
-        // Read information about salesmen from a file
-        List<Salesman> salesmen = fileManager.readInformationSalesmanFile("files/info/salesmen_info.csv");
+        boolean watch = false;
+        boolean cube = false;
+        int reportLimit = Integer.MAX_VALUE;
+        long sortMemory = 0;
+        int shardIndex = -1;
+        int shardCount = 0;
+        String partialPath = null;
+        List<Path> mergePaths = null;
+        for (int i = 0; i < args.length; i++) {
+            if ("--watch".equals(args[i])) {
+                watch = true;
+            } else if ("--cube".equals(args[i])) {
+                cube = true;
+            } else if ("--top".equals(args[i]) && i + 1 < args.length && args[i + 1].matches("[1-9]\\d{0,8}")) {
+                reportLimit = Integer.parseInt(args[++i]);
+            } else if ("--sort-memory".equals(args[i]) && i + 1 < args.length
+                    && args[i + 1].matches("[1-9]\\d{0,6}")) {
+                sortMemory = Long.parseLong(args[++i]) * 1024 * 1024;
+            } else if ("--shard".equals(args[i]) && i + 1 < args.length && args[i + 1].matches("\\d{1,4}/\\d{1,4}")) {
+                String[] shard = args[++i].split("/");
+                shardIndex = Integer.parseInt(shard[0]);
+                shardCount = Integer.parseInt(shard[1]);
+            } else if ("--partial".equals(args[i]) && i + 1 < args.length) {
+                partialPath = args[++i];
+            } else if ("--merge".equals(args[i]) && i + 1 < args.length) {
+                mergePaths = new ArrayList<>();
+                for (String path : args[++i].split(",")) {
+                    mergePaths.add(Path.of(path));
+                }
+            } else {
+                LOGGER.severe("Unknown argument " + args[i]);
+                return;
+            }
+        }
+
+        if ((shardIndex >= 0) != (partialPath != null) || shardIndex >= shardCount) {
+            LOGGER.severe("--shard I/N and --partial FILE must be given together, with I lower than N");
+            return;
+        }
+        if (cube && (watch || shardIndex >= 0 || mergePaths != null)) {
+            LOGGER.severe("--cube cannot be combined with --watch, --shard or --merge");
+            return;
+        }
 
-        // Read information about available products from a file
-        List<Product> products = fileManager.readFileWithInformationOnAvailableProducts("files/info/products.csv");
+        try (QuarantineFile quarantine = new QuarantineFile(Path.of(QUARANTINE_PATH))) {
+            // Lines that cannot be used are recorded instead of stopping the run
+            fileManager.setQuarantine(quarantine);
+            if (watch) {
+                watch(fileManager, reportLimit, sortMemory);
+                return;
+            }
 
-        // Read sales information from files and generate sales objects
-        List<Sale> sales = fileManager.readSalesInformationFile("files/salesmen", products, salesmen);
+            PipelineMetrics metrics = PipelineMetrics.get();
+            long catalogLoadStart = metrics.startStage(PipelineStage.CATALOG_LOAD);
+            CatalogLoadEvent catalogLoadEvent = new CatalogLoadEvent();
+            catalogLoadEvent.begin();
 
-        try {
-            // Write a report with information about salesmen
-            fileManager.writeSalesMenReport(sales, "files/reports/salesmen_report.csv");
-            LOGGER.info("The salesmen report was written successfully!");
-        } catch (Exception e) {
-            LOGGER.severe("An error occurred while writing the salesmen report. " + e.getMessage());
+            // Map the indexes of salesmen and products, reading the files only when they changed
+            SalesmanDirectory directory = fileManager.loadSalesmanDirectory("files/info/salesmen_info.csv");
+            ProductCatalog catalog = fileManager.loadProductCatalog("files/info/products.csv");
+            metrics.endStage(PipelineStage.CATALOG_LOAD, catalogLoadStart);
+            catalogLoadEvent.setProducts(catalog.size()).setSalesmen(directory.size()).commit();
+
+            SalesAggregate aggregate;
+            if (partialPath != null) {
+                // Aggregate only the files of this shard and leave the totals for the coordinator
+                ShardedProcessor processor = new ShardedProcessor(fileManager);
+                aggregate = processor.processShard("files/salesmen", catalog, directory, shardIndex, shardCount,
+                        new IngestionOptions());
+                if (aggregate == null) {
+                    return;
+                }
+                try {
+                    processor.writePartial(Path.of(partialPath), aggregate, shardIndex, shardCount);
+                    LOGGER.info("The partial file was written successfully!");
+                } catch (Exception e) {
+                    LOGGER.severe("An error occurred while writing the partial file. " + e.getMessage());
+                }
+                return;
+            } else if (mergePaths != null) {
+                // Merge the totals written by the workers of every shard
+                try {
+                    aggregate = new ShardedProcessor(fileManager).mergePartials(mergePaths, catalog, directory);
+                } catch (Exception e) {
+                    LOGGER.severe("An error occurred while merging the partial files. " + e.getMessage());
+                    return;
+                }
+            } else {
+                // Bring the totals of salesmen and products up to date, reading only new or changed files
+                aggregate = new IncrementalProcessor(fileManager, "files/state/sales_state.bin",
+                        new IngestionOptions().setCubeEnabled(cube)).update("files/salesmen", catalog, directory);
+                if (aggregate == null) {
+                    return;
+                }
+            }
+
+            try {
+                // Write the reports of salesmen and products at the same time
+                if (sortMemory > 0) {
+                    fileManager.writeReportsExternal(aggregate, "files/reports/salesmen_report.csv",
+                            "files/reports/products_report.csv", sortMemory, reportLimit);
+                } else {
+                    fileManager.writeReports(aggregate, "files/reports/salesmen_report.csv",
+                            "files/reports/products_report.csv", reportLimit);
+                }
+                LOGGER.info("The salesmen and products reports were written successfully!");
+            } catch (Exception e) {
+                LOGGER.severe("An error occurred while writing the reports. " + e.getMessage());
+            }
+            if (cube) {
+                try {
+                    // Answer the best products of every salesman from the cube, without reading the sales again
+                    fileManager.writeSalesmanProductsReport(aggregate, SALESMAN_PRODUCTS_REPORT_PATH, reportLimit);
+                    LOGGER.info("The salesman products report was written successfully!");
+                } catch (Exception e) {
+                    LOGGER.severe("An error occurred while writing the salesman products report. " + e.getMessage());
+                }
+            }
+            if (quarantine.getRejectedLines() > 0) {
+                LOGGER.warning(quarantine.getRejectedLines() + " lines were rejected, see " + QUARANTINE_PATH);
+            }
+        } catch (IOException e) {
+            LOGGER.severe("An error occurred while opening the quarantine file. " + e.getMessage());
         }
+    }
 
+    /**
+     * Keeps the reports up to date until the process is stopped.
+     *
+     * @param fileManager The file manager used to read and write files.
+     * @param reportLimit The maximum number of lines of each report.
+     * @param sortMemory  The memory budget of the sort of each report, or 0 to
+     *                    sort in memory.
+     */
+    private static void watch(FileManager fileManager, int reportLimit, long sortMemory) {
+        IncrementalProcessor processor = new IncrementalProcessor(fileManager, "files/state/sales_state.bin",
+                new IngestionOptions());
+        ReportDaemon daemon = new ReportDaemon(fileManager, processor, "files/info", "files/salesmen",
+                "files/reports", WATCH_DEBOUNCE, reportLimit).setMaxLatency(WATCH_MAX_LATENCY)
+                .setSortMemory(sortMemory);
         try {
-            // Write a report with information about products
-            fileManager.writeProductsReport(sales, products, "files/reports/products_report.csv");
-            LOGGER.info("The products report was written successfully!");
+            daemon.run();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.info("The watch of the input folders was stopped");
         } catch (Exception e) {
-            LOGGER.severe("An error occurred while writing the products report. " + e.getMessage());
+            LOGGER.severe("An error occurred while watching the input folders. " + e.getMessage());
         }
     }
 }
@@ -2,7 +2,6 @@ package com.poli.pojo;
 
 import java.io.Serializable;
 import java.util.Objects;
-import java.util.UUID;
 
 /**
  * The Product class represents a product in a store.
@@ -10,7 +9,7 @@ import java.util.UUID;
  */
 public class Product implements Serializable {
     
-    private static final long serialVersionUID = UUID.randomUUID().getMostSignificantBits() & Long.MAX_VALUE;
+    private static final long serialVersionUID = 1L;
 
     private String productId;
     private String productName;
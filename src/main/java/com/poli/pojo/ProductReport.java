@@ -1,16 +1,15 @@
 package com.poli.pojo;
 
 import java.io.Serializable;
-import java.util.UUID;
 
 /**
- * The ProductReport class represents a report for a product, including the product name and the total number of units sold.
+ * The ProductReport class represents a report for a product, including the product name and the total amount sold.
  */
 public class ProductReport implements Serializable {
 
-    private static final long serialVersionUID = UUID.randomUUID().getMostSignificantBits() & Long.MAX_VALUE;
+    private static final long serialVersionUID = 1L;
     private String productName;
-    private double totalSold;
+    private long totalSoldCents;
 
     /**
      * Gets the name of the product.
@@ -33,22 +32,46 @@ public class ProductReport implements Serializable {
     }
 
     /**
-     * Gets the total number of units sold for the product.
+     * Gets the total amount sold of the product in cents.
      * 
-     * @return The total number of units sold.
+     * @return The total amount sold in cents.
      */
+    public long getTotalSoldCents() {
+        return totalSoldCents;
+    }
+
+    /**
+     * Sets the total amount sold of the product in cents.
+     * 
+     * @param totalSoldCents The total amount sold in cents.
+     * @return The ProductReport object.
+     */
+    public ProductReport setTotalSoldCents(long totalSoldCents) {
+        this.totalSoldCents = totalSoldCents;
+        return this;
+    }
+
+    /**
+     * Gets the total amount sold of the product.
+     * 
+     * @return The total amount sold.
+     * @deprecated Use {@link #getTotalSoldCents()}, which is exact.
+     */
+    @Deprecated
     public double getTotalSold() {
-        return totalSold;
+        return totalSoldCents / 100.0;
     }
 
     /**
-     * Sets the total number of units sold for the product.
+     * Sets the total amount sold of the product, rounded to the nearest cent.
      * 
-     * @param totalSold The total number of units sold.
+     * @param totalSold The total amount sold.
      * @return The ProductReport object.
+     * @deprecated Use {@link #setTotalSoldCents(long)}, which is exact.
      */
+    @Deprecated
     public ProductReport setTotalSold(double totalSold) {
-        this.totalSold = totalSold;
+        this.totalSoldCents = Math.round(totalSold * 100);
         return this;
     }
 
@@ -61,7 +84,7 @@ public class ProductReport implements Serializable {
     public String toString() {
         return "ProductReport{" +
                 "productName='" + productName + '\'' +
-                ", totalSold=" + totalSold +
+                ", totalSoldCents=" + totalSoldCents +
                 '}';
     }
 }
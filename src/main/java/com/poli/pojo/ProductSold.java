@@ -1,14 +1,13 @@
 package com.poli.pojo;
 
 import java.io.Serializable;
-import java.util.UUID;
 
 /**
  * Represents a product sold, including the quantity sold and the product information.
  */
 public class ProductSold implements Serializable {
     
-    private static final long serialVersionUID = UUID.randomUUID().getMostSignificantBits() & Long.MAX_VALUE;
+    private static final long serialVersionUID = 1L;
     int soldQuantity;
     Product product;
 
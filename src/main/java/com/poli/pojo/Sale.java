@@ -2,14 +2,13 @@ package com.poli.pojo;
 
 import java.io.Serializable;
 import java.util.List;
-import java.util.UUID;
 
 /**
  * The Sale class represents a sale made by a salesman.
  * It contains information about the salesman and the products sold.
  */
 public class Sale implements Serializable {
-    private static final long serialVersionUID = UUID.randomUUID().getMostSignificantBits() & Long.MAX_VALUE;
+    private static final long serialVersionUID = 1L;
     private Salesman salesman;
     private List<ProductSold> soldProducts;
 
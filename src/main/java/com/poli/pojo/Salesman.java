@@ -2,7 +2,6 @@ package com.poli.pojo;
 
 import java.io.Serializable;
 import java.util.Objects;
-import java.util.UUID;
 
 /**
  * The Salesman class represents a salesman in a system.
@@ -10,7 +9,7 @@ import java.util.UUID;
  * first name, and last name.
  */
 public class Salesman implements Serializable {
-    private static final long serialVersionUID = UUID.randomUUID().getMostSignificantBits() & Long.MAX_VALUE;
+    private static final long serialVersionUID = 1L;
     private String documentType;
     private Long documentNumber;
     private String firstName;
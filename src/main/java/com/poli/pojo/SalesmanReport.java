@@ -1,15 +1,14 @@
 package com.poli.pojo;
 
 import java.io.Serializable;
-import java.util.UUID;
 
 /**
  * The SalesmanReport class represents a report for a salesman, containing their full name and total sales.
  */
 public class SalesmanReport implements Serializable {
-    private static final long serialVersionUID = UUID.randomUUID().getMostSignificantBits() & Long.MAX_VALUE;
+    private static final long serialVersionUID = 1L;
     private String fullName;
-    private int totalSales;
+    private long totalSalesCents;
 
     /**
      * Gets the full name of the salesman.
@@ -32,22 +31,47 @@ public class SalesmanReport implements Serializable {
     }
 
     /**
-     * Gets the total sales of the salesman.
+     * Gets the total sales of the salesman in cents.
+     * 
+     * @return The total sales of the salesman in cents.
+     */
+    public long getTotalSalesCents() {
+        return totalSalesCents;
+    }
+
+    /**
+     * Sets the total sales of the salesman in cents.
+     * 
+     * @param totalSalesCents The total sales of the salesman in cents.
+     * @return The SalesmanReport object.
+     */
+    public SalesmanReport setTotalSalesCents(long totalSalesCents) {
+        this.totalSalesCents = totalSalesCents;
+        return this;
+    }
+
+    /**
+     * Gets the total sales of the salesman in whole units, the cents left out.
      * 
      * @return The total sales of the salesman.
+     * @throws ArithmeticException if the total does not fit in an int.
+     * @deprecated Use {@link #getTotalSalesCents()}, which keeps the cents.
      */
+    @Deprecated
     public int getTotalSales() {
-        return totalSales;
+        return Math.toIntExact(totalSalesCents / 100);
     }
 
     /**
-     * Sets the total sales of the salesman.
+     * Sets the total sales of the salesman in whole units.
      * 
      * @param totalSales The total sales of the salesman.
      * @return The SalesmanReport object.
+     * @deprecated Use {@link #setTotalSalesCents(long)}, which keeps the cents.
      */
+    @Deprecated
     public SalesmanReport setTotalSales(int totalSales) {
-        this.totalSales = totalSales;
+        this.totalSalesCents = totalSales * 100L;
         return this;
     }
 
@@ -60,7 +84,7 @@ public class SalesmanReport implements Serializable {
     public String toString() {
         return "SalesmanReport{" +
                 "fullName='" + fullName + '\'' +
-                ", totalSales=" + totalSales +
+                ", totalSalesCents=" + totalSalesCents +
                 '}';
     }
 }
@@ -0,0 +1,193 @@
+package com.poli.service;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The BinaryBlockReader class reads the files written by
+ * {@link BinaryBlockWriter}. It fills a large direct buffer from a
+ * {@link FileChannel} and copies primitive columns out of it in bulk, instead
+ * of decoding them value by value.
+ */
+public class BinaryBlockReader implements Closeable {
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private byte[] scratch = new byte[256];
+
+    /**
+     * Opens a file for reading.
+     *
+     * @param path the path of the file
+     * @throws IOException if the file cannot be opened
+     */
+    public BinaryBlockReader(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        buffer.limit(0);
+    }
+
+    /**
+     * Reads an int.
+     *
+     * @return the value read
+     * @throws IOException if the file cannot be read or ends too early
+     */
+    public int readInt() throws IOException {
+        ensureAvailable(Integer.BYTES);
+        return buffer.getInt();
+    }
+
+    /**
+     * Reads a long.
+     *
+     * @return the value read
+     * @throws IOException if the file cannot be read or ends too early
+     */
+    public long readLong() throws IOException {
+        ensureAvailable(Long.BYTES);
+        return buffer.getLong();
+    }
+
+    /**
+     * Reads a double.
+     *
+     * @return the value read
+     * @throws IOException if the file cannot be read or ends too early
+     */
+    public double readDouble() throws IOException {
+        ensureAvailable(Double.BYTES);
+        return buffer.getDouble();
+    }
+
+    /**
+     * Reads a string written as its UTF-8 length followed by its UTF-8 bytes.
+     *
+     * @return the value read
+     * @throws IOException if the file cannot be read or ends too early
+     */
+    public String readString() throws IOException {
+        int length = readInt();
+        if (length < 0) {
+            throw new IOException("Invalid string length " + length);
+        }
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        int offset = 0;
+        while (offset < length) {
+            ensureAvailable(1);
+            int chunk = Math.min(buffer.remaining(), length - offset);
+            buffer.get(scratch, offset, chunk);
+            offset += chunk;
+        }
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads raw bytes.
+     *
+     * @param values the array receiving the bytes
+     * @param offset the position of the first byte
+     * @param length the number of bytes
+     * @throws IOException if the file cannot be read or ends too early
+     */
+    public void readBytes(byte[] values, int offset, int length) throws IOException {
+        while (length > 0) {
+            ensureAvailable(1);
+            int chunk = Math.min(buffer.remaining(), length);
+            buffer.get(values, offset, chunk);
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    /**
+     * Reads a column of ints.
+     *
+     * @param values the array receiving the column
+     * @param offset the position of the first value
+     * @param length the number of values
+     * @throws IOException if the file cannot be read or ends too early
+     */
+    public void readInts(int[] values, int offset, int length) throws IOException {
+        while (length > 0) {
+            ensureAvailable(Integer.BYTES);
+            int chunk = Math.min(buffer.remaining() / Integer.BYTES, length);
+            buffer.asIntBuffer().get(values, offset, chunk);
+            buffer.position(buffer.position() + chunk * Integer.BYTES);
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    /**
+     * Reads a column of longs.
+     *
+     * @param values the array receiving the column
+     * @param offset the position of the first value
+     * @param length the number of values
+     * @throws IOException if the file cannot be read or ends too early
+     */
+    public void readLongs(long[] values, int offset, int length) throws IOException {
+        while (length > 0) {
+            ensureAvailable(Long.BYTES);
+            int chunk = Math.min(buffer.remaining() / Long.BYTES, length);
+            buffer.asLongBuffer().get(values, offset, chunk);
+            buffer.position(buffer.position() + chunk * Long.BYTES);
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    /**
+     * Reads a column of doubles.
+     *
+     * @param values the array receiving the column
+     * @param offset the position of the first value
+     * @param length the number of values
+     * @throws IOException if the file cannot be read or ends too early
+     */
+    public void readDoubles(double[] values, int offset, int length) throws IOException {
+        while (length > 0) {
+            ensureAvailable(Double.BYTES);
+            int chunk = Math.min(buffer.remaining() / Double.BYTES, length);
+            buffer.asDoubleBuffer().get(values, offset, chunk);
+            buffer.position(buffer.position() + chunk * Double.BYTES);
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    /**
+     * Closes the file.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Refills the buffer until at least the given bytes are available.
+     */
+    private void ensureAvailable(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+        buffer.compact();
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("The file ends before the expected data");
+            }
+        }
+        buffer.flip();
+    }
+}
@@ -0,0 +1,192 @@
+package com.poli.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The BinaryBlockWriter class writes primitive values, primitive columns and
+ * length prefixed strings to a {@link FileChannel} through a large direct
+ * buffer, so a binary file is written in big blocks instead of value by value.
+ */
+public class BinaryBlockWriter implements Closeable {
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    /**
+     * Creates, or truncates, a file for writing.
+     *
+     * @param path the path of the file
+     * @throws IOException if the file cannot be opened
+     */
+    public BinaryBlockWriter(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Writes an int.
+     *
+     * @param value the value to write
+     * @throws IOException if the file cannot be written
+     */
+    public void writeInt(int value) throws IOException {
+        ensureRemaining(Integer.BYTES);
+        buffer.putInt(value);
+    }
+
+    /**
+     * Writes a long.
+     *
+     * @param value the value to write
+     * @throws IOException if the file cannot be written
+     */
+    public void writeLong(long value) throws IOException {
+        ensureRemaining(Long.BYTES);
+        buffer.putLong(value);
+    }
+
+    /**
+     * Writes a double.
+     *
+     * @param value the value to write
+     * @throws IOException if the file cannot be written
+     */
+    public void writeDouble(double value) throws IOException {
+        ensureRemaining(Double.BYTES);
+        buffer.putDouble(value);
+    }
+
+    /**
+     * Writes a string as its UTF-8 length followed by its UTF-8 bytes.
+     *
+     * @param value the value to write
+     * @throws IOException if the file cannot be written
+     */
+    public void writeString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeInt(bytes.length);
+        int offset = 0;
+        while (offset < bytes.length) {
+            ensureRemaining(1);
+            int chunk = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, chunk);
+            offset += chunk;
+        }
+    }
+
+    /**
+     * Writes raw bytes.
+     *
+     * @param values the array holding the bytes
+     * @param offset the position of the first byte
+     * @param length the number of bytes
+     * @throws IOException if the file cannot be written
+     */
+    public void writeBytes(byte[] values, int offset, int length) throws IOException {
+        while (length > 0) {
+            ensureRemaining(1);
+            int chunk = Math.min(buffer.remaining(), length);
+            buffer.put(values, offset, chunk);
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    /**
+     * Writes a column of ints.
+     *
+     * @param values the array holding the column
+     * @param offset the position of the first value
+     * @param length the number of values
+     * @throws IOException if the file cannot be written
+     */
+    public void writeInts(int[] values, int offset, int length) throws IOException {
+        while (length > 0) {
+            ensureRemaining(Integer.BYTES);
+            int chunk = Math.min(buffer.remaining() / Integer.BYTES, length);
+            buffer.asIntBuffer().put(values, offset, chunk);
+            buffer.position(buffer.position() + chunk * Integer.BYTES);
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    /**
+     * Writes a column of longs.
+     *
+     * @param values the array holding the column
+     * @param offset the position of the first value
+     * @param length the number of values
+     * @throws IOException if the file cannot be written
+     */
+    public void writeLongs(long[] values, int offset, int length) throws IOException {
+        while (length > 0) {
+            ensureRemaining(Long.BYTES);
+            int chunk = Math.min(buffer.remaining() / Long.BYTES, length);
+            buffer.asLongBuffer().put(values, offset, chunk);
+            buffer.position(buffer.position() + chunk * Long.BYTES);
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    /**
+     * Writes a column of doubles.
+     *
+     * @param values the array holding the column
+     * @param offset the position of the first value
+     * @param length the number of values
+     * @throws IOException if the file cannot be written
+     */
+    public void writeDoubles(double[] values, int offset, int length) throws IOException {
+        while (length > 0) {
+            ensureRemaining(Double.BYTES);
+            int chunk = Math.min(buffer.remaining() / Double.BYTES, length);
+            buffer.asDoubleBuffer().put(values, offset, chunk);
+            buffer.position(buffer.position() + chunk * Double.BYTES);
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    /**
+     * Writes the pending bytes and closes the file.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Flushes the buffer when fewer than the given bytes are free.
+     */
+    private void ensureRemaining(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes the content of the buffer to the channel.
+     */
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,502 @@
+package com.poli.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+import com.poli.pojo.Product;
+import com.poli.pojo.Salesman;
+
+/**
+ * The CatalogIndex class is a sidecar file next to the products or salesmen
+ * file, named after it with an {@code .idx} extension, that lets a
+ * {@link ProductCatalog} or a {@link SalesmanDirectory} be used without parsing
+ * the file again. The index is memory-mapped and queried in place:
+ * <ul>
+ * <li>header: magic number, format version, kind, number of entries, size and
+ * CRC32C checksum of the source file, the fingerprints of the catalog, the
+ * capacities of the hash tables, the size of the strings and the CRC32C
+ * checksum of the rest of the index</li>
+ * <li>entries: one fixed-width entry per ordinal with a long, a double and the
+ * offsets of three strings; a product stores its price in cents, unit price,
+ * ID and name, a salesman its document number, document type and names</li>
+ * <li>keys: an open addressing hash table of numeric keys to ordinals, the
+ * canonical numeric product IDs or the document numbers</li>
+ * <li>IDs: a hash table of the other product IDs, by a 64-bit hash checked
+ * against the stored ID</li>
+ * <li>strings: every distinct string once, with its length</li>
+ * </ul>
+ * An index whose size or checksum of the source does not match is ignored, and
+ * {@link FileManager} builds it again after parsing the file. So is an index
+ * whose own checksum does not match, so a damaged index is never queried. The
+ * lookups still bound their probes by the capacity of the tables and check the
+ * ordinals and string offsets they read.
+ */
+class CatalogIndex {
+    static final int PRODUCTS = 1;
+    static final int SALESMEN = 2;
+
+    private static final int MAGIC = 0x43494458;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 64;
+    private static final int ENTRY_SIZE = 32;
+    private static final int SLOT_SIZE = 12;
+    private static final int CHECKSUM_OFFSET = 60;
+    private static final int NO_STRING = -1;
+    private static final int CHECKSUM_BUFFER_SIZE = 1024 * 1024;
+    private static final String EXTENSION = ".idx";
+
+    private final ByteBuffer buffer;
+    private final int size;
+    private final long fingerprint;
+    private final long idFingerprint;
+    private final int keysOffset;
+    private final int keysMask;
+    private final int idsOffset;
+    private final int idsMask;
+    private final int poolOffset;
+
+    /**
+     * Creates an index over a validated mapping.
+     */
+    private CatalogIndex(ByteBuffer buffer, int size, int keysCapacity, int idsCapacity) {
+        this.buffer = buffer;
+        this.size = size;
+        this.fingerprint = buffer.getLong(32);
+        this.idFingerprint = buffer.getLong(40);
+        this.keysOffset = HEADER_SIZE + size * ENTRY_SIZE;
+        this.keysMask = keysCapacity - 1;
+        this.idsOffset = keysOffset + keysCapacity * SLOT_SIZE;
+        this.idsMask = idsCapacity - 1;
+        this.poolOffset = idsOffset + idsCapacity * SLOT_SIZE;
+    }
+
+    /**
+     * Returns the path of the index of a source file.
+     *
+     * @param source the path of the products or salesmen file
+     * @return the path of its index
+     */
+    static Path indexPathOf(Path source) {
+        return source.resolveSibling(source.getFileName() + EXTENSION);
+    }
+
+    /**
+     * Checks if a file name is the name of an index or of an index being
+     * written.
+     *
+     * @param fileName the name of the file
+     * @return true if the file belongs to an index
+     */
+    static boolean isIndexFile(Path fileName) {
+        return fileName.toString().contains(EXTENSION);
+    }
+
+    /**
+     * Computes the CRC32C checksum of a file.
+     *
+     * @param source the path of the file
+     * @return the checksum
+     * @throws IOException if the file cannot be read
+     */
+    static long checksumOf(Path source) throws IOException {
+        CRC32C crc = new CRC32C();
+        ByteBuffer block = ByteBuffer.allocateDirect(CHECKSUM_BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            while (channel.read(block) >= 0) {
+                block.flip();
+                crc.update(block);
+                block.clear();
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Maps the index of a source file if it exists, is of the given kind, was
+     * built from a source of the same size and checksum and is not damaged.
+     *
+     * @param source   the path of the products or salesmen file
+     * @param kind     {@link #PRODUCTS} or {@link #SALESMEN}
+     * @param checksum the checksum of the source file
+     * @return the index, or null if it is missing, out of date or not valid
+     * @throws IOException if the files cannot be read
+     */
+    static CatalogIndex open(Path source, int kind, long checksum) throws IOException {
+        MappedByteBuffer mapping;
+        try (FileChannel channel = FileChannel.open(indexPathOf(source), StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length < HEADER_SIZE || length > Integer.MAX_VALUE) {
+                return null;
+            }
+            mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        if (mapping.getInt(0) != MAGIC || mapping.getInt(4) != VERSION || mapping.getInt(8) != kind
+                || mapping.getLong(16) != Files.size(source) || mapping.getLong(24) != checksum) {
+            return null;
+        }
+        int size = mapping.getInt(12);
+        int keysCapacity = mapping.getInt(48);
+        int idsCapacity = mapping.getInt(52);
+        if (size < 0 || Integer.bitCount(keysCapacity) != 1 || Integer.bitCount(idsCapacity) != 1
+                || HEADER_SIZE + (long) size * ENTRY_SIZE + ((long) keysCapacity + idsCapacity) * SLOT_SIZE
+                        + mapping.getInt(56) != mapping.capacity()
+                || mapping.getInt(CHECKSUM_OFFSET) != checksumOf(mapping)) {
+            return null;
+        }
+        return new CatalogIndex(mapping, size, keysCapacity, idsCapacity);
+    }
+
+    /**
+     * Writes the index of a products file.
+     *
+     * @param source   the path of the products file
+     * @param checksum the checksum of the file the catalog was read from
+     * @param catalog  the catalog read from the file
+     * @throws IOException if the index cannot be written
+     */
+    static void write(Path source, long checksum, ProductCatalog catalog) throws IOException {
+        int size = catalog.size();
+        long[] longs = new long[size];
+        double[] doubles = new double[size];
+        String[][] strings = new String[3][size];
+        long[] keys = new long[size];
+        List<String> ids = new ArrayList<>();
+        List<Integer> idOrdinals = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            Product product = catalog.getProductAt(i);
+            longs[i] = catalog.getUnitPriceCents(i);
+            doubles[i] = product.getUnitPrice();
+            strings[0][i] = product.getProductId();
+            strings[1][i] = product.getProductName();
+            keys[i] = ProductCatalog.toCanonicalNumber(product.getProductId());
+            if (keys[i] < 0) {
+                ids.add(product.getProductId());
+                idOrdinals.add(i);
+            }
+        }
+        write(source, PRODUCTS, checksum, catalog.fingerprint(), catalog.idFingerprint(), longs, doubles,
+                strings, keys, ids, idOrdinals);
+    }
+
+    /**
+     * Writes the index of a salesmen file.
+     *
+     * @param source    the path of the salesmen file
+     * @param checksum  the checksum of the file the directory was read from
+     * @param directory the directory read from the file
+     * @throws IOException if the index cannot be written
+     */
+    static void write(Path source, long checksum, SalesmanDirectory directory) throws IOException {
+        int size = directory.size();
+        long[] longs = new long[size];
+        String[][] strings = new String[3][size];
+        for (int i = 0; i < size; i++) {
+            Salesman salesman = directory.getSalesmanAt(i);
+            longs[i] = salesman.getDocumentNumber();
+            strings[0][i] = salesman.getDocumentType();
+            strings[1][i] = salesman.getFirstName();
+            strings[2][i] = salesman.getLastName();
+        }
+        write(source, SALESMEN, checksum, directory.fingerprint(), 0, longs, new double[size], strings, longs,
+                List.of(), List.of());
+    }
+
+    /**
+     * Returns the number of entries of the index.
+     *
+     * @return the number of products or salesmen
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the fingerprint of the catalog or directory the index was built
+     * from.
+     *
+     * @return the fingerprint
+     */
+    long fingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Returns the fingerprint of the product IDs of the catalog the index was
+     * built from.
+     *
+     * @return the fingerprint of the IDs
+     */
+    long idFingerprint() {
+        return idFingerprint;
+    }
+
+    /**
+     * Returns the long of an entry: the price in cents of a product or the
+     * document number of a salesman.
+     *
+     * @param ordinal the ordinal of the entry
+     * @return the long of the entry
+     */
+    long getLong(int ordinal) {
+        return buffer.getLong(HEADER_SIZE + ordinal * ENTRY_SIZE);
+    }
+
+    /**
+     * Returns the double of an entry: the unit price of a product.
+     *
+     * @param ordinal the ordinal of the entry
+     * @return the double of the entry
+     */
+    double getDouble(int ordinal) {
+        return buffer.getDouble(HEADER_SIZE + ordinal * ENTRY_SIZE + 8);
+    }
+
+    /**
+     * Returns a string of an entry.
+     *
+     * @param ordinal the ordinal of the entry
+     * @param field   the position of the string in the entry, from 0 to 2
+     * @return the string, or null if the entry has none
+     */
+    String getString(int ordinal, int field) {
+        int offset = buffer.getInt(HEADER_SIZE + ordinal * ENTRY_SIZE + 16 + field * 4);
+        if (offset == NO_STRING) {
+            return null;
+        }
+        if (offset < poolOffset || offset > buffer.capacity() - 4) {
+            throw corrupt();
+        }
+        int length = buffer.getInt(offset);
+        if (length < 0 || length > buffer.capacity() - offset - 4) {
+            throw corrupt();
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(offset + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the ordinal of the entry with a numeric key.
+     *
+     * @param key the canonical numeric product ID or the document number
+     * @return the ordinal, or -1 if no entry has the key
+     */
+    int ordinalOf(long key) {
+        int slot = slot(key) & keysMask;
+        for (int probe = 0; probe <= keysMask; probe++) {
+            int position = keysOffset + slot * SLOT_SIZE;
+            int ordinal = buffer.getInt(position + 8);
+            if (ordinal == -1) {
+                return -1;
+            }
+            checkOrdinal(ordinal);
+            if (buffer.getLong(position) == key) {
+                return ordinal;
+            }
+            slot = (slot + 1) & keysMask;
+        }
+        throw corrupt();
+    }
+
+    /**
+     * Returns the ordinal of the product with an ID that is not in canonical
+     * numeric form.
+     *
+     * @param productId the ID of the product
+     * @return the ordinal, or -1 if no product has the ID
+     */
+    int ordinalOfId(String productId) {
+        long hash = hashOf(productId);
+        int slot = slot(hash) & idsMask;
+        for (int probe = 0; probe <= idsMask; probe++) {
+            int position = idsOffset + slot * SLOT_SIZE;
+            int ordinal = buffer.getInt(position + 8);
+            if (ordinal == -1) {
+                return -1;
+            }
+            checkOrdinal(ordinal);
+            if (buffer.getLong(position) == hash && productId.equals(getString(ordinal, 0))) {
+                return ordinal;
+            }
+            slot = (slot + 1) & idsMask;
+        }
+        throw corrupt();
+    }
+
+    /**
+     * Checks that an ordinal read from a hash table is one of the entries.
+     */
+    private void checkOrdinal(int ordinal) {
+        if (ordinal < 0 || ordinal >= size) {
+            throw corrupt();
+        }
+    }
+
+    /**
+     * Returns the exception of a lookup that found the index inconsistent: a
+     * table without a free slot, an ordinal that is not an entry or a string
+     * outside the pool.
+     */
+    private static IllegalStateException corrupt() {
+        return new IllegalStateException("The catalog index is corrupt");
+    }
+
+    /**
+     * Writes an index to a temporary file through a mapping and moves it into
+     * place, so a reader never maps a partial index. Products whose ID is not
+     * numeric have a key below zero and are left out of the table of keys.
+     */
+    private static void write(Path source, int kind, long checksum, long fingerprint, long idFingerprint,
+            long[] longs, double[] doubles, String[][] strings, long[] keys, List<String> ids,
+            List<Integer> idOrdinals) throws IOException {
+        int size = longs.length;
+        Map<String, Integer> offsets = new HashMap<>();
+        List<byte[]> pool = new ArrayList<>();
+        int keysCapacity = capacityFor(size);
+        int idsCapacity = capacityFor(ids.size());
+        long poolOffset = HEADER_SIZE + (long) size * ENTRY_SIZE + (long) (keysCapacity + idsCapacity) * SLOT_SIZE;
+        long length = poolOffset;
+        int[][] references = new int[3][size];
+        for (int field = 0; field < 3; field++) {
+            for (int i = 0; i < size; i++) {
+                String value = strings[field][i];
+                Integer offset = value == null ? Integer.valueOf(NO_STRING) : offsets.get(value);
+                if (offset == null) {
+                    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                    if (length + 4 + bytes.length > Integer.MAX_VALUE) {
+                        throw new IOException("The index of " + source.getFileName() + " would be too large");
+                    }
+                    offset = (int) length;
+                    offsets.put(value, offset);
+                    pool.add(bytes);
+                    length += 4 + bytes.length;
+                }
+                references[field][i] = offset;
+            }
+        }
+
+        Path target = indexPathOf(source);
+        Path temporary = ReportFileWriter.createTemporaryFile(target);
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+                mapping.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, kind).putInt(12, size)
+                        .putLong(16, Files.size(source)).putLong(24, checksum).putLong(32, fingerprint)
+                        .putLong(40, idFingerprint).putInt(48, keysCapacity).putInt(52, idsCapacity)
+                        .putInt(56, (int) (length - poolOffset));
+                for (int i = 0; i < size; i++) {
+                    int entry = HEADER_SIZE + i * ENTRY_SIZE;
+                    mapping.putLong(entry, longs[i]).putDouble(entry + 8, doubles[i]);
+                    for (int field = 0; field < 3; field++) {
+                        mapping.putInt(entry + 16 + field * 4, references[field][i]);
+                    }
+                }
+                int keysOffset = HEADER_SIZE + size * ENTRY_SIZE;
+                int idsOffset = keysOffset + keysCapacity * SLOT_SIZE;
+                clearSlots(mapping, keysOffset, keysCapacity);
+                clearSlots(mapping, idsOffset, idsCapacity);
+                for (int i = 0; i < size; i++) {
+                    if (kind == SALESMEN || keys[i] >= 0) {
+                        putSlot(mapping, keysOffset, keysCapacity - 1, keys[i], i);
+                    }
+                }
+                for (int i = 0; i < ids.size(); i++) {
+                    putSlot(mapping, idsOffset, idsCapacity - 1, hashOf(ids.get(i)), idOrdinals.get(i));
+                }
+                int position = (int) poolOffset;
+                for (byte[] bytes : pool) {
+                    mapping.putInt(position, bytes.length).put(position + 4, bytes);
+                    position += 4 + bytes.length;
+                }
+                mapping.putInt(CHECKSUM_OFFSET, checksumOf(mapping));
+            }
+            try {
+                Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Computes the CRC32C checksum of an index, every byte but the checksum
+     * itself.
+     */
+    private static int checksumOf(ByteBuffer mapping) {
+        CRC32C crc = new CRC32C();
+        crc.update(mapping.slice(0, CHECKSUM_OFFSET));
+        crc.update(mapping.slice(HEADER_SIZE, mapping.capacity() - HEADER_SIZE));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Marks every slot of a hash table as empty.
+     */
+    private static void clearSlots(ByteBuffer mapping, int tableOffset, int capacity) {
+        for (int slot = 0; slot < capacity; slot++) {
+            mapping.putLong(tableOffset + slot * SLOT_SIZE, 0).putInt(tableOffset + slot * SLOT_SIZE + 8, -1);
+        }
+    }
+
+    /**
+     * Stores a key in the first free slot of its probe sequence. Keys are unique,
+     * since the catalog and the directory keep only the first entry of a key.
+     */
+    private static void putSlot(ByteBuffer mapping, int tableOffset, int mask, long key, int ordinal) {
+        int slot = slot(key) & mask;
+        while (mapping.getInt(tableOffset + slot * SLOT_SIZE + 8) >= 0) {
+            slot = (slot + 1) & mask;
+        }
+        mapping.putLong(tableOffset + slot * SLOT_SIZE, key).putInt(tableOffset + slot * SLOT_SIZE + 8, ordinal);
+    }
+
+    /**
+     * Returns the smallest power of two that keeps a table of the given number
+     * of keys at most half full.
+     */
+    private static int capacityFor(int keys) {
+        int capacity = 2;
+        while (capacity < keys * 2L) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * Spreads the bits of a key, like {@link LongIntHashMap}.
+     */
+    private static int slot(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    /**
+     * Computes the 64-bit FNV-1a hash of the characters of a product ID.
+     */
+    private static long hashOf(String productId) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < productId.length(); i++) {
+            hash = (hash ^ productId.charAt(i)) * 0x100000001B3L;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,50 @@
+package com.poli.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The CatalogLoadEvent class is a Flight Recorder event emitted every time the
+ * products and salesmen files are read and indexed. It is disabled by default.
+ * It is also emitted from outside this package, so its fields have setters.
+ */
+@Name("com.poli.CatalogLoad")
+@Label("Catalog Load")
+@Category("Sales Pipeline")
+@Description("Reading and indexing of the products and salesmen files")
+@Enabled(false)
+@StackTrace(false)
+public class CatalogLoadEvent extends Event {
+    @Label("Products")
+    long products;
+
+    @Label("Salesmen")
+    long salesmen;
+
+    /**
+     * Sets the number of products loaded.
+     *
+     * @param products the number of products
+     * @return the updated CatalogLoadEvent object
+     */
+    public CatalogLoadEvent setProducts(long products) {
+        this.products = products;
+        return this;
+    }
+
+    /**
+     * Sets the number of salesmen loaded.
+     *
+     * @param salesmen the number of salesmen
+     * @return the updated CatalogLoadEvent object
+     */
+    public CatalogLoadEvent setSalesmen(long salesmen) {
+        this.salesmen = salesmen;
+        return this;
+    }
+}
@@ -0,0 +1,375 @@
+package com.poli.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * The ExternalReportSorter class sorts report lines that may not fit in memory.
+ * Lines are buffered until an estimate of their size reaches the memory budget;
+ * the buffer is then sorted and spilled to a temporary run file next to the
+ * report. The final report is produced by a k-way merge of the runs. At most
+ * {@value #MAX_FAN_IN} runs are open at once: when there are more, groups of
+ * runs are first merged into longer runs, in as many passes as needed. Lines
+ * are ordered by key, highest first, and ties by the lowest tie breaker, like
+ * the in-memory reports.
+ * <p>
+ * A run holds, for every line, its key, its tie breaker, and its name as the
+ * length of its UTF-8 bytes followed by the bytes.
+ */
+public class ExternalReportSorter implements Closeable {
+    private static final int ENTRY_OVERHEAD = 64;
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_FAN_IN = 64;
+
+    private final Path spillFolder;
+    private final long memoryBudget;
+    private final List<Path> runs = new ArrayList<>();
+    private long[] keys = new long[1024];
+    private long[] tieBreakers = new long[1024];
+    private String[] names = new String[1024];
+    private int size;
+    private long bufferedBytes;
+
+    /**
+     * Creates a sorter.
+     *
+     * @param spillFolder  the folder where the sorted runs are written
+     * @param memoryBudget the approximate number of bytes of lines kept in memory
+     *                     before a run is spilled
+     */
+    public ExternalReportSorter(Path spillFolder, long memoryBudget) {
+        if (memoryBudget < ENTRY_OVERHEAD) {
+            throw new IllegalArgumentException("The memory budget is too small");
+        }
+        this.spillFolder = spillFolder;
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Adds a line to sort.
+     *
+     * @param key        the value the line is sorted by, highest first
+     * @param tieBreaker the value that orders lines with the same key, lowest
+     *                   first
+     * @param name       the name written at the start of the line
+     * @throws IOException if a run cannot be spilled
+     */
+    public void add(long key, long tieBreaker, String name) throws IOException {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            tieBreakers = Arrays.copyOf(tieBreakers, size * 2);
+            names = Arrays.copyOf(names, size * 2);
+        }
+        keys[size] = key;
+        tieBreakers[size] = tieBreaker;
+        names[size] = name;
+        size++;
+        bufferedBytes += ENTRY_OVERHEAD + 2L * name.length();
+        if (bufferedBytes >= memoryBudget) {
+            spill();
+        }
+    }
+
+    /**
+     * Writes every line added so far, sorted, to a report file. Each line is the
+     * name, a semicolon and the formatted key. The report is published by a
+     * {@link ReportFileWriter}, so it is replaced only once it is complete.
+     *
+     * @param target the path of the report
+     * @param format the format of the key
+     * @throws IOException if the report or a run cannot be written or read
+     */
+    public void writeTo(Path target, KeyFormat format) throws IOException {
+        writeTo(target, format, Long.MAX_VALUE);
+    }
+
+    /**
+     * Writes the first lines added so far, sorted, to a report file. Each line
+     * is the name, a semicolon and the formatted key. The report is published
+     * by a {@link ReportFileWriter}, so it is replaced only once it is complete.
+     *
+     * @param target the path of the report
+     * @param format the format of the key
+     * @param limit  the maximum number of lines to write
+     * @throws IOException if the report or a run cannot be written or read
+     */
+    public void writeTo(Path target, KeyFormat format, long limit) throws IOException {
+        try (ReportFileWriter writer = new ReportFileWriter(target)) {
+            if (runs.isEmpty()) {
+                int[] indexes = sortedIndexes();
+                for (int i = 0; i < indexes.length && i < limit; i++) {
+                    writeLine(writer, names[indexes[i]], keys[indexes[i]], format);
+                }
+            } else {
+                spill();
+                while (runs.size() > MAX_FAN_IN) {
+                    mergePass(limit);
+                }
+                merge(runs, cursor -> writeLine(writer, cursor.name(), cursor.key, format), limit);
+            }
+            writer.commit();
+        }
+    }
+
+    /**
+     * Returns the number of runs spilled to disk.
+     *
+     * @return the number of runs
+     */
+    public int getRunCount() {
+        return runs.size();
+    }
+
+    /**
+     * Deletes the runs spilled to disk.
+     *
+     * @throws IOException if a run cannot be deleted
+     */
+    @Override
+    public void close() throws IOException {
+        for (Path run : runs) {
+            Files.deleteIfExists(run);
+        }
+        runs.clear();
+    }
+
+    /**
+     * Sorts the buffered lines and writes them to a new run file.
+     */
+    private void spill() throws IOException {
+        if (size == 0) {
+            return;
+        }
+        Files.createDirectories(spillFolder);
+        Path run = Files.createTempFile(spillFolder, "report_run", ".tmp");
+        runs.add(run);
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(run), STREAM_BUFFER_SIZE))) {
+            for (int index : sortedIndexes()) {
+                byte[] name = names[index].getBytes(StandardCharsets.UTF_8);
+                out.writeLong(keys[index]);
+                out.writeLong(tieBreakers[index]);
+                out.writeInt(name.length);
+                out.write(name);
+            }
+        }
+        Arrays.fill(names, 0, size, null);
+        size = 0;
+        bufferedBytes = 0;
+    }
+
+    /**
+     * Merges every group of {@value #MAX_FAN_IN} runs into a single longer run,
+     * so each pass divides the number of runs by the fan in.
+     *
+     * @param limit the maximum number of lines kept in each merged run, as only
+     *              the first lines of the report are written
+     */
+    private void mergePass(long limit) throws IOException {
+        List<Path> merged = new ArrayList<>();
+        for (int start = 0; start < runs.size(); start += MAX_FAN_IN) {
+            List<Path> group = runs.subList(start, Math.min(start + MAX_FAN_IN, runs.size()));
+            Path run = Files.createTempFile(spillFolder, "report_run", ".tmp");
+            merged.add(run);
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(run), STREAM_BUFFER_SIZE))) {
+                merge(group, cursor -> cursor.writeTo(out), limit);
+            } catch (IOException e) {
+                for (Path path : merged) {
+                    Files.deleteIfExists(path);
+                }
+                throw e;
+            }
+        }
+        close();
+        runs.addAll(merged);
+    }
+
+    /**
+     * Merges runs with a priority queue holding the current line of every run.
+     *
+     * @param group the runs to merge, all opened at once
+     * @param sink  receives the lines in report order
+     * @param limit the maximum number of lines passed to the sink
+     */
+    private void merge(List<Path> group, LineSink sink, long limit) throws IOException {
+        PriorityQueue<RunCursor> queue = new PriorityQueue<>(group.size(),
+                (c1, c2) -> compare(c1.key, c1.tieBreaker, c2.key, c2.tieBreaker));
+        List<RunCursor> cursors = new ArrayList<>(group.size());
+        try {
+            for (Path run : group) {
+                RunCursor cursor = new RunCursor(run);
+                cursors.add(cursor);
+                if (cursor.next()) {
+                    queue.add(cursor);
+                }
+            }
+            for (long lines = 0; lines < limit && !queue.isEmpty(); lines++) {
+                RunCursor cursor = queue.poll();
+                sink.accept(cursor);
+                if (cursor.next()) {
+                    queue.add(cursor);
+                }
+            }
+        } finally {
+            for (RunCursor cursor : cursors) {
+                cursor.close();
+            }
+        }
+    }
+
+    /**
+     * Writes a report line.
+     */
+    private static void writeLine(ReportFileWriter writer, String name, long key, KeyFormat format)
+            throws IOException {
+        writer.append(name).append(';');
+        format.append(writer, key);
+        writer.newLine();
+    }
+
+    /**
+     * Returns the indexes of the buffered lines in report order, using a merge
+     * sort on primitive indexes.
+     */
+    private int[] sortedIndexes() {
+        int[] indexes = new int[size];
+        for (int i = 0; i < size; i++) {
+            indexes[i] = i;
+        }
+        int[] buffer = new int[size];
+        for (int width = 1; width < size; width *= 2) {
+            for (int start = 0; start < size; start += 2 * width) {
+                int middle = Math.min(start + width, size);
+                int end = Math.min(start + 2 * width, size);
+                int left = start;
+                int right = middle;
+                for (int i = start; i < end; i++) {
+                    if (left < middle && (right >= end || compare(keys[indexes[left]], tieBreakers[indexes[left]],
+                            keys[indexes[right]], tieBreakers[indexes[right]]) <= 0)) {
+                        buffer[i] = indexes[left++];
+                    } else {
+                        buffer[i] = indexes[right++];
+                    }
+                }
+            }
+            int[] swap = indexes;
+            indexes = buffer;
+            buffer = swap;
+        }
+        return indexes;
+    }
+
+    /**
+     * Compares two lines in report order.
+     */
+    private static int compare(long key, long tieBreaker, long otherKey, long otherTieBreaker) {
+        int byKey = Long.compare(otherKey, key);
+        return byKey != 0 ? byKey : Long.compare(tieBreaker, otherTieBreaker);
+    }
+
+    /**
+     * The KeyFormat interface appends the key of a line to the report.
+     */
+    @FunctionalInterface
+    public interface KeyFormat {
+        /**
+         * Appends a key.
+         *
+         * @param writer the writer of the report
+         * @param key    the key of the line
+         * @throws IOException if the report cannot be written
+         */
+        void append(ReportFileWriter writer, long key) throws IOException;
+    }
+
+    /**
+     * The LineSink interface receives the lines of a merge.
+     */
+    @FunctionalInterface
+    private interface LineSink {
+        /**
+         * Receives the current line of a run.
+         *
+         * @param cursor the run, positioned on the line
+         * @throws IOException if the line cannot be written
+         */
+        void accept(RunCursor cursor) throws IOException;
+    }
+
+    /**
+     * The RunCursor class reads the lines of a run one at a time.
+     */
+    private static final class RunCursor implements Closeable {
+        private final DataInputStream in;
+        private long key;
+        private long tieBreaker;
+        private byte[] name = new byte[64];
+        private int nameLength;
+
+        /**
+         * Opens a run.
+         */
+        private RunCursor(Path run) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), STREAM_BUFFER_SIZE));
+        }
+
+        /**
+         * Advances to the next line of the run.
+         */
+        private boolean next() throws IOException {
+            try {
+                key = in.readLong();
+            } catch (EOFException e) {
+                return false;
+            }
+            tieBreaker = in.readLong();
+            nameLength = in.readInt();
+            if (nameLength < 0) {
+                throw new IOException("Corrupted report run, invalid name length " + nameLength);
+            }
+            if (nameLength > name.length) {
+                name = new byte[Math.max(nameLength, name.length * 2)];
+            }
+            in.readFully(name, 0, nameLength);
+            return true;
+        }
+
+        /**
+         * Returns the name of the current line.
+         */
+        private String name() {
+            return new String(name, 0, nameLength, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Copies the current line to another run, without decoding its name.
+         */
+        private void writeTo(DataOutputStream out) throws IOException {
+            out.writeLong(key);
+            out.writeLong(tieBreaker);
+            out.writeInt(nameLength);
+            out.write(name, 0, nameLength);
+        }
+
+        /**
+         * Closes the run.
+         */
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.poli.service;
+
+import java.util.Arrays;
+
+/**
+ * The FileContribution class holds what a single salesmen file adds to the
+ * aggregate: its salesman and the quantity and number of lines of every product
+ * it sold. It is collected while the file is streamed and kept so the file can
+ * later be taken out of the totals again.
+ */
+public class FileContribution implements SalesLineConsumer {
+    private int salesmanOrdinal = -1;
+    private int[] productOrdinals = new int[8];
+    private long[] quantities = new long[8];
+    private long[] lines = new long[8];
+    private int size;
+    private final LongIntHashMap slotsByProduct = new LongIntHashMap(8, -1);
+
+    /**
+     * Collects a sales line of the file.
+     *
+     * @param salesmanOrdinal the ordinal of the salesman in the directory
+     * @param productOrdinal  the ordinal of the product in the catalog
+     * @param quantity        the quantity sold
+     */
+    @Override
+    public void accept(int salesmanOrdinal, int productOrdinal, int quantity) {
+        add(salesmanOrdinal, productOrdinal, quantity, 1);
+    }
+
+    /**
+     * Collects a number of lines of a product sold by the salesman of the file.
+     *
+     * @param salesmanOrdinal the ordinal of the salesman in the directory
+     * @param productOrdinal  the ordinal of the product in the catalog
+     * @param quantity        the quantity sold in those lines
+     * @param lineCount       the number of lines
+     */
+    public void add(int salesmanOrdinal, int productOrdinal, long quantity, long lineCount) {
+        this.salesmanOrdinal = salesmanOrdinal;
+        int slot = slotsByProduct.get(productOrdinal);
+        if (slot < 0) {
+            if (size == productOrdinals.length) {
+                productOrdinals = Arrays.copyOf(productOrdinals, size * 2);
+                quantities = Arrays.copyOf(quantities, size * 2);
+                lines = Arrays.copyOf(lines, size * 2);
+            }
+            slot = size++;
+            slotsByProduct.put(productOrdinal, slot);
+            productOrdinals[slot] = productOrdinal;
+        }
+        quantities[slot] += quantity;
+        lines[slot] += lineCount;
+    }
+
+    /**
+     * Collects the lines of another contribution, such as the one of a range of
+     * the same file or of another file of the same salesman.
+     *
+     * @param other the contribution to add
+     */
+    public void addAll(FileContribution other) {
+        for (int i = 0; i < other.size; i++) {
+            add(other.salesmanOrdinal, other.productOrdinals[i], other.quantities[i], other.lines[i]);
+        }
+    }
+
+    /**
+     * Adds the contribution to the totals of an aggregator, or takes it out of
+     * them.
+     *
+     * @param aggregator the aggregator to update
+     * @param sign       1 to add the contribution, -1 to subtract it
+     */
+    public void applyTo(SalesAggregator aggregator, int sign) {
+        for (int i = 0; i < size; i++) {
+            aggregator.adjust(salesmanOrdinal, productOrdinals[i], sign * quantities[i], sign * lines[i]);
+        }
+    }
+
+    /**
+     * Returns the ordinal of the salesman of the file.
+     *
+     * @return the ordinal of the salesman, or -1 if the file has no valid lines
+     */
+    public int getSalesmanOrdinal() {
+        return salesmanOrdinal;
+    }
+
+    /**
+     * Returns the number of distinct products sold in the file.
+     *
+     * @return the number of products
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the ordinal of the product at the given position.
+     *
+     * @param index the position of the product
+     * @return the ordinal of the product in the catalog
+     */
+    public int getProductOrdinal(int index) {
+        return productOrdinals[index];
+    }
+
+    /**
+     * Returns the quantity sold of the product at the given position.
+     *
+     * @param index the position of the product
+     * @return the quantity sold
+     */
+    public long getQuantity(int index) {
+        return quantities[index];
+    }
+
+    /**
+     * Returns the number of lines of the product at the given position.
+     *
+     * @param index the position of the product
+     * @return the number of lines
+     */
+    public long getLines(int index) {
+        return lines[index];
+    }
+
+    /**
+     * Returns a string representation of the FileContribution object.
+     *
+     * @return a string representation of the FileContribution object
+     */
+    @Override
+    public String toString() {
+        return "FileContribution{" +
+                "salesmanOrdinal=" + salesmanOrdinal +
+                ", products=" + size +
+                '}';
+    }
+}
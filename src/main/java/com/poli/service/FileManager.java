@@ -1,25 +1,34 @@
 package com.poli.service;
 
 import com.poli.pojo.Product;
-import com.poli.pojo.ProductReport;
 import com.poli.pojo.ProductSold;
 import com.poli.pojo.Sale;
 import com.poli.pojo.Salesman;
-import com.poli.pojo.SalesmanReport;
 
 import java.util.logging.Logger;
 import java.util.logging.Level;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.io.BufferedWriter;
-import java.io.FileWriter;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.function.ObjLongConsumer;
 
 /**
  * The FileManager class contains methods to read and write information from and
@@ -28,9 +37,34 @@ import java.io.FileWriter;
 public class FileManager {
     private static final Logger LOGGER = Logger.getLogger(FileManager.class.getName());
 
+    private static final String[] COMPRESSED_EXTENSIONS = { ".gz", ".deflate", ".zz" };
+    private static final RejectReason[] REJECT_REASONS = RejectReason.values();
+    private static final ExecutorService REPORT_WRITERS = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "report-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private QuarantineFile quarantine;
+
+    /**
+     * Sets the file the rejected lines of the readers are recorded in. Without
+     * one, rejected lines are only counted in the {@link PipelineMetrics}.
+     *
+     * @param quarantine the quarantine file, or null to record nothing
+     * @return the updated FileManager object
+     */
+    public FileManager setQuarantine(QuarantineFile quarantine) {
+        this.quarantine = quarantine;
+        return this;
+    }
+
     /**
      * Reads information from a sales men file and returns a list of Salesman
-     * objects.
+     * objects. If the file does not exist, its compressed version, with a
+     * {@code .gz}, {@code .deflate} or {@code .zz} extension, is read instead.
+     * Lines without four fields or with an invalid document number are left out
+     * and recorded in the quarantine file.
      *
      * @param filePath the path of the file to be read
      * @return a list of Salesman objects containing the information read from the
@@ -38,19 +72,29 @@ public class FileManager {
      */
     public List<Salesman> readInformationSalesmanFile(String filePath) {
         List<Salesman> salesMen = new ArrayList<>();
-        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
-            String lineOfFile;
-            while ((lineOfFile = br.readLine()) != null) {
-                String[] fragments = lineOfFile.split(";");
-                if (fragments.length == 4) {
-                    Salesman salesman = new Salesman();
-                    salesman.setDocumentType(fragments[0]);
-                    salesman.setDocumentNumber(Long.parseLong(fragments[1]));
-                    salesman.setFirstName(fragments[2]);
-                    salesman.setLastName(fragments[3]);
-                    salesMen.add(salesman);
+        Path path = resolveInputPath(filePath);
+        String fileName = path.getFileName().toString();
+        try (MappedCsvReader reader = new MappedCsvReader(path)) {
+            while (reader.nextLine()) {
+                RejectReason reason;
+                if (reader.getFieldCount() != 4) {
+                    reason = isBlankLine(reader) ? null : RejectReason.WRONG_FIELD_COUNT;
+                } else {
+                    reason = numberRejectReason(reader.parseLong(1));
+                    if (reason == null) {
+                        Salesman salesman = new Salesman();
+                        salesman.setDocumentType(reader.getString(0));
+                        salesman.setDocumentNumber(reader.getParsedLong());
+                        salesman.setFirstName(reader.getString(2));
+                        salesman.setLastName(reader.getString(3));
+                        salesMen.add(salesman);
+                    }
+                }
+                if (reason != null) {
+                    quarantine(fileName, reader.getLineNumber(), reason);
                 }
             }
+            flushQuarantine();
         } catch (IOException e) {
             LOGGER.log(Level.SEVERE, "{0} file not found", filePath);
         }
@@ -59,6 +103,9 @@ public class FileManager {
 
     /**
      * Reads information from a products file and returns a list of Product objects.
+     * If the file does not exist, its compressed version is read instead. Lines
+     * without three fields or with a price that is not a positive amount of
+     * cents are left out and recorded in the quarantine file.
      *
      * @param filePath the path of the file to be read
      * @return a list of Product objects containing the information read from the
@@ -66,114 +113,898 @@ public class FileManager {
      */
     public List<Product> readFileWithInformationOnAvailableProducts(String filePath) {
         List<Product> products = new ArrayList<>();
-        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
-            String lineOfFile;
-            while ((lineOfFile = br.readLine()) != null) {
-                String[] fragments = lineOfFile.split(";");
-                if (fragments.length == 3) {
-                    Product product = new Product();
-                    product.setProductId(fragments[0]);
-                    product.setProductName(fragments[1]);
-                    product.setUnitPrice(Double.parseDouble(fragments[2]));
-                    products.add(product);
+        Path path = resolveInputPath(filePath);
+        String fileName = path.getFileName().toString();
+        try (MappedCsvReader reader = new MappedCsvReader(path)) {
+            while (reader.nextLine()) {
+                RejectReason reason;
+                if (reader.getFieldCount() != 3) {
+                    reason = isBlankLine(reader) ? null : RejectReason.WRONG_FIELD_COUNT;
+                } else {
+                    reason = numberRejectReason(reader.parseDouble(2));
+                    double unitPrice = reader.getParsedDouble();
+                    if (reason == null && unitPrice <= 0) {
+                        reason = RejectReason.NON_POSITIVE_PRICE;
+                    } else if (reason == null && !Money.fitsInCents(unitPrice)) {
+                        reason = RejectReason.OVERFLOW;
+                    }
+                    if (reason == null) {
+                        Product product = new Product();
+                        product.setProductId(reader.getString(0));
+                        product.setProductName(reader.getString(1));
+                        product.setUnitPrice(unitPrice);
+                        products.add(product);
+                    }
+                }
+                if (reason != null) {
+                    quarantine(fileName, reader.getLineNumber(), reason);
                 }
             }
+            flushQuarantine();
         } catch (IOException e) {
             LOGGER.severe(filePath + " file not found");
         }
         return products;
     }
 
+    /**
+     * Loads the catalog of products from the {@link CatalogIndex} of a products
+     * file, so the file is not parsed again while it does not change. When the
+     * index is missing or was built from another version of the file, the file
+     * is read with {@link #readFileWithInformationOnAvailableProducts(String)}
+     * and the index is written for the next runs. Lines rejected while the index
+     * was built are not recorded again.
+     *
+     * @param filePath the path of the products file
+     * @return the catalog of products
+     */
+    public ProductCatalog loadProductCatalog(String filePath) {
+        Path path = resolveInputPath(filePath);
+        long checksum = checksumOf(path);
+        CatalogIndex index = checksum < 0 ? null : openIndex(path, CatalogIndex.PRODUCTS, checksum);
+        if (index != null) {
+            return new ProductCatalog(index);
+        }
+        ProductCatalog catalog = new ProductCatalog(readFileWithInformationOnAvailableProducts(filePath));
+        if (checksum >= 0) {
+            try {
+                CatalogIndex.write(path, checksum, catalog);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "The index of {0} could not be written: {1}",
+                        new Object[] { path, e.getMessage() });
+            }
+        }
+        return catalog;
+    }
+
+    /**
+     * Loads the directory of salesmen from the {@link CatalogIndex} of a
+     * salesmen file, reading the file and writing its index only when the index
+     * is missing or out of date.
+     *
+     * @param filePath the path of the salesmen file
+     * @return the directory of salesmen
+     */
+    public SalesmanDirectory loadSalesmanDirectory(String filePath) {
+        Path path = resolveInputPath(filePath);
+        long checksum = checksumOf(path);
+        CatalogIndex index = checksum < 0 ? null : openIndex(path, CatalogIndex.SALESMEN, checksum);
+        if (index != null) {
+            return new SalesmanDirectory(index);
+        }
+        SalesmanDirectory directory = new SalesmanDirectory(readInformationSalesmanFile(filePath));
+        if (checksum >= 0) {
+            try {
+                CatalogIndex.write(path, checksum, directory);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "The index of {0} could not be written: {1}",
+                        new Object[] { path, e.getMessage() });
+            }
+        }
+        return directory;
+    }
+
+    /**
+     * Computes the checksum an index of the file must have been built from.
+     *
+     * @param path the path of the products or salesmen file
+     * @return the checksum, or -1 if the file cannot be read
+     */
+    private long checksumOf(Path path) {
+        try {
+            return CatalogIndex.checksumOf(path);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Maps the index of a file, logging why it cannot be used.
+     *
+     * @param path     the path of the products or salesmen file
+     * @param kind     the kind of index
+     * @param checksum the checksum of the file
+     * @return the index, or null if the file must be read
+     */
+    private CatalogIndex openIndex(Path path, int kind, long checksum) {
+        try {
+            CatalogIndex index = CatalogIndex.open(path, kind, checksum);
+            if (index == null) {
+                LOGGER.log(Level.INFO, "Indexing {0}", path);
+            }
+            return index;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "The index of {0} could not be read: {1}", new Object[] { path, e.getMessage() });
+            return null;
+        }
+    }
+
+    /**
+     * Returns the path of an input file, or of its compressed version when only
+     * that one exists.
+     *
+     * @param filePath the path of the uncompressed file
+     * @return the path to read
+     */
+    private Path resolveInputPath(String filePath) {
+        Path path = Path.of(filePath);
+        if (Files.exists(path)) {
+            return path;
+        }
+        for (String extension : COMPRESSED_EXTENSIONS) {
+            Path compressed = Path.of(filePath + extension);
+            if (Files.exists(compressed)) {
+                return compressed;
+            }
+        }
+        return path;
+    }
+
     /**
      * Reads information from a sales file and returns a list of Sale objects.
+     * Files of the folder may be compressed with gzip or zlib deflate.
      *
      * @param folderPath the path of the folder containing the files to be read
      * @param products   a list of Product objects containing the information of the
      *                   available products
+     * @param salesmen   a list of Salesman objects containing the information of
+     *                   the known salesmen
      * @return a list of Sale objects containing the information read from the files
      */
     public List<Sale> readSalesInformationFile(String folderPath, List<Product> products, List<Salesman> salesmen) {
-        List<Sale> sales = new ArrayList<>();
+        if (products == null || products.isEmpty()) {
+            LOGGER.severe("The list of products is null or empty");
+            return new ArrayList<>();
+        }
+        if (salesmen == null || salesmen.isEmpty()) {
+            LOGGER.severe("The list of salesmen is null or empty");
+            return new ArrayList<>();
+        }
+        return readSalesInformationFile(folderPath, new ProductCatalog(products), new SalesmanDirectory(salesmen));
+    }
+
+    /**
+     * Reads information from a sales file and returns a list of Sale objects,
+     * resolving products and salesmen through their hash indexes. The lines are
+     * read into a {@link SalesTable} first, and only the totals of every product
+     * of a salesman become objects. The files of the same salesman are merged
+     * into a single Sale, like
+     * {@link #readSalesInformationFile(String, ProductCatalog, SalesmanDirectory, IngestionOptions)}
+     * does, so both return the same sales for the same folder.
+     *
+     * @param folderPath the path of the folder containing the files to be read
+     * @param catalog    the catalog of available products
+     * @param directory  the directory of known salesmen
+     * @return a list of Sale objects, one per salesman with valid lines
+     */
+    public List<Sale> readSalesInformationFile(String folderPath, ProductCatalog catalog,
+            SalesmanDirectory directory) {
+        SalesTable table = readSalesTable(folderPath, catalog, directory);
+        Map<Integer, FileContribution> contributionsBySalesman = new LinkedHashMap<>();
+        for (int line = 0; line < table.size(); line++) {
+            contributionsBySalesman.computeIfAbsent(table.getSalesmanOrdinal(line), ordinal -> new FileContribution())
+                    .accept(table.getSalesmanOrdinal(line), table.getProductOrdinal(line), table.getQuantity(line));
+        }
+        return toSales(contributionsBySalesman.values(), catalog, directory);
+    }
+
+    /**
+     * Reads the sales files of a folder into a columnar {@link SalesTable}. Lines
+     * are stored as ordinals of the catalog and the directory instead of Sale and
+     * ProductSold objects, in the order of the files and of their lines. The
+     * lines of a file that cannot be read to the end are left out.
+     *
+     * @param folderPath the path of the folder containing the files to be read
+     * @param catalog    the catalog of available products
+     * @param directory  the directory of known salesmen
+     * @return the table of sales lines, empty if the folder or the inputs are not
+     *         valid
+     */
+    public SalesTable readSalesTable(String folderPath, ProductCatalog catalog, SalesmanDirectory directory) {
+        SalesTable table = new SalesTable();
+        File[] files = listSalesFiles(folderPath, catalog, directory);
+        if (files == null) {
+            return table;
+        }
+        long start = PipelineMetrics.get().startStage(PipelineStage.INGEST);
+        for (File file : files) {
+            int size = table.size();
+            if (!streamFile(file, catalog, directory, table)) {
+                table.truncate(size);
+            }
+        }
+        PipelineMetrics.get().endStage(PipelineStage.INGEST, start);
+        table.trimToSize();
+        return table;
+    }
+
+    /**
+     * Reads information from the sales files of a folder using a pool of worker
+     * threads and returns a list of Sale objects. The largest files are scheduled
+     * first so a big file found at the end of the folder does not leave a long
+     * tail, files of at least twice the range size of the options are parsed by
+     * several workers at the same time, and the number of files open at the same
+     * time is bounded.
+     * <p>
+     * The files of the same salesman are merged into a single Sale, whose
+     * products sold hold the total quantity of every product, in the order the
+     * salesmen first appear in the folder. The totals are identical to the ones
+     * of the sequential reading.
+     *
+     * @param folderPath the path of the folder containing the files to be read
+     * @param catalog    the catalog of available products
+     * @param directory  the directory of known salesmen
+     * @param options    the number of workers, the open files limit and the size
+     *                   of the ranges of large files
+     * @return a list of Sale objects, one per salesman with valid lines
+     */
+    public List<Sale> readSalesInformationFile(String folderPath, ProductCatalog catalog,
+            SalesmanDirectory directory, IngestionOptions options) {
+        File[] files = listSalesFiles(folderPath, catalog, directory);
+        if (files == null) {
+            return new ArrayList<>();
+        }
+        return mergeBySalesman(readContributions(files, catalog, directory, options), catalog, directory);
+    }
+
+    /**
+     * Reads what every file of a list adds to the aggregate using a pool of
+     * worker threads, the largest files first, with the ranges of large files
+     * parsed at the same time and the number of files open at the same time
+     * bounded by the options.
+     *
+     * @param files     the sales files to read
+     * @param catalog   the catalog of available products
+     * @param directory the directory of known salesmen
+     * @param options   the number of workers, the open files limit and the size
+     *                  of the ranges of large files
+     * @return the contribution of every file, in the order of the list, null for
+     *         the files that could not be read
+     */
+    FileContribution[] readContributions(File[] files, ProductCatalog catalog, SalesmanDirectory directory,
+            IngestionOptions options) {
+        Integer[] largestFirst = new Integer[files.length];
+        long[] lengths = new long[files.length];
+        for (int i = 0; i < files.length; i++) {
+            largestFirst[i] = i;
+            lengths[i] = files[i].length();
+        }
+        Arrays.sort(largestFirst, (i1, i2) -> Long.compare(lengths[i2], lengths[i1]));
+
+        FileContribution[] contributionsByFile = new FileContribution[files.length];
+        Semaphore openFiles = new Semaphore(options.getMaxOpenFiles());
+        ExecutorService workers = Executors.newFixedThreadPool(options.getParallelism());
+        long start = PipelineMetrics.get().startStage(PipelineStage.INGEST);
+        try {
+            List<Future<?>> tasks = new ArrayList<>(files.length);
+            for (int index : largestFirst) {
+                tasks.add(workers.submit(() -> {
+                    openFiles.acquireUninterruptibly();
+                    try {
+                        contributionsByFile[index] = readContribution(files[index], catalog, directory, options,
+                                workers, openFiles, null);
+                    } finally {
+                        openFiles.release();
+                    }
+                }));
+            }
+            for (Future<?> task : tasks) {
+                awaitTask(task);
+            }
+        } finally {
+            workers.shutdownNow();
+            PipelineMetrics.get().endStage(PipelineStage.INGEST, start);
+        }
+        return contributionsByFile;
+    }
+
+    /**
+     * Merges the contributions of the files of every salesman into one Sale.
+     *
+     * @param contributions the contributions of the files, in folder order, null
+     *                      for the files that could not be read
+     * @param catalog       the catalog of available products
+     * @param directory     the directory of known salesmen
+     * @return one Sale per salesman with valid lines
+     */
+    private List<Sale> mergeBySalesman(FileContribution[] contributions, ProductCatalog catalog,
+            SalesmanDirectory directory) {
+        Map<Integer, FileContribution> contributionsBySalesman = new LinkedHashMap<>();
+        for (FileContribution contribution : contributions) {
+            if (contribution != null && contribution.getSalesmanOrdinal() >= 0) {
+                contributionsBySalesman.computeIfAbsent(contribution.getSalesmanOrdinal(),
+                        ordinal -> new FileContribution()).addAll(contribution);
+            }
+        }
+        return toSales(contributionsBySalesman.values(), catalog, directory);
+    }
+
+    /**
+     * Builds one Sale per merged contribution of a salesman. A total quantity
+     * larger than an int is split among several products sold.
+     *
+     * @param contributions the contributions of the salesmen
+     * @param catalog       the catalog of available products
+     * @param directory     the directory of known salesmen
+     * @return one Sale per contribution, in the same order
+     */
+    private List<Sale> toSales(Collection<FileContribution> contributions, ProductCatalog catalog,
+            SalesmanDirectory directory) {
+        List<Sale> sales = new ArrayList<>(contributions.size());
+        for (FileContribution merged : contributions) {
+            List<ProductSold> productsSold = new ArrayList<>(merged.size());
+            for (int i = 0; i < merged.size(); i++) {
+                Product product = catalog.getProductAt(merged.getProductOrdinal(i));
+                for (long quantity = merged.getQuantity(i); quantity > 0; quantity -= Integer.MAX_VALUE) {
+                    productsSold.add(new ProductSold().setProduct(product)
+                            .setSoldQuantity((int) Math.min(quantity, Integer.MAX_VALUE)));
+                }
+            }
+            Sale sale = new Sale();
+            sale.setSalesman(directory.getSalesmanAt(merged.getSalesmanOrdinal()));
+            sale.setSoldProducts(productsSold);
+            sales.add(sale);
+        }
+        return sales;
+    }
+
+    /**
+     * Reads the sales files of a folder in streaming mode: every parsed line goes
+     * straight into the running totals of a {@link SalesAggregator} and is then
+     * dropped, so no list of sales is built and the memory used depends only on
+     * the size of the catalog and the directory.
+     *
+     * @param folderPath the path of the folder containing the files to be read
+     * @param catalog    the catalog of available products
+     * @param directory  the directory of known salesmen
+     * @return the aggregate of the sales read from the files, or null if the
+     *         folder or the inputs are not valid
+     */
+    public SalesAggregate aggregateSalesInformationFile(String folderPath, ProductCatalog catalog,
+            SalesmanDirectory directory) {
+        File[] files = listSalesFiles(folderPath, catalog, directory);
+        if (files == null) {
+            return null;
+        }
+        SalesAggregator aggregator = new SalesAggregator(catalog, directory);
+        long start = PipelineMetrics.get().startStage(PipelineStage.INGEST);
+        for (File file : files) {
+            streamFile(file, catalog, directory, aggregator);
+        }
+        PipelineMetrics.get().endStage(PipelineStage.INGEST, start);
+        return aggregator.getAggregate();
+    }
+
+    /**
+     * Waits for a file task to finish, rethrowing the unchecked exception of the
+     * task as the sequential reading would have thrown it.
+     *
+     * @param task the task to wait for
+     */
+    private void awaitTask(Future<?> task) {
+        try {
+            task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The reading of the sales files was interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("An error occurred while reading the sales files", e.getCause());
+        }
+    }
+
+    /**
+     * Validates the inputs of the reading of sales files and lists the files of
+     * the folder.
+     *
+     * @param folderPath the path of the folder containing the files to be read
+     * @param catalog    the catalog of available products
+     * @param directory  the directory of known salesmen
+     * @return the files of the folder, or null if the inputs are not valid
+     */
+    File[] listSalesFiles(String folderPath, ProductCatalog catalog, SalesmanDirectory directory) {
         File folder = new File(folderPath);
         if (!folder.exists()) {
             LOGGER.log(Level.SEVERE, "{0} folder not found", folderPath);
-            return sales;
+            return null;
         }
-        if (folder.listFiles() == null) {
+        File[] files = folder.listFiles();
+        if (files == null) {
             LOGGER.severe("No files found in the folder");
-            return sales;
+            return null;
         }
-        if (products == null || products.isEmpty()) {
+        if (catalog == null || catalog.isEmpty()) {
             LOGGER.severe("The list of products is null or empty");
-            return sales;
+            return null;
         }
-        if (salesmen == null || salesmen.isEmpty()) {
+        if (directory == null || directory.isEmpty()) {
             LOGGER.severe("The list of salesmen is null or empty");
-            return sales;
+            return null;
+        }
+        return files;
+    }
+
+    /**
+     * Streams the lines of a file into a consumer without building a Sale. The
+     * first line with two fields holds the document number of the salesman.
+     * Every other line is validated without throwing and, if it is rejected, is
+     * recorded in the quarantine file with its {@link RejectReason}, so a bad
+     * line never stops the reading of the file or of the folder.
+     *
+     * @param file      The file to be processed.
+     * @param catalog   The catalog used to resolve the products of the file.
+     * @param directory The directory used to resolve the salesman of the file.
+     * @param consumer  The consumer of the resolved sales lines.
+     * @return true if the file was read, false if it could not be read.
+     */
+    boolean streamFile(File file, ProductCatalog catalog, SalesmanDirectory directory,
+            SalesLineConsumer consumer) {
+        return streamFile(file, catalog, directory, consumer, null);
+    }
+
+    /**
+     * Streams the lines of a file into a consumer, feeding the bytes of the file
+     * to a digest as they are parsed.
+     *
+     * @param file      The file to be processed.
+     * @param catalog   The catalog used to resolve the products of the file.
+     * @param directory The directory used to resolve the salesman of the file.
+     * @param consumer  The consumer of the resolved sales lines.
+     * @param digest    The digest of the content of the file, or null.
+     * @return true if the file was read, false if it could not be read.
+     */
+    private boolean streamFile(File file, ProductCatalog catalog, SalesmanDirectory directory,
+            SalesLineConsumer consumer, MessageDigest digest) {
+        SalesFileEvent event = new SalesFileEvent();
+        event.begin();
+        long[] rejected = new long[REJECT_REASONS.length];
+        ObjLongConsumer<RejectReason> rejects = rejectsOf(file.getName(), rejected);
+        long lines = 0;
+        boolean read = true;
+        try (MappedCsvReader reader = new MappedCsvReader(file.toPath(), digest)) {
+            int salesmanOrdinal = readHeader(reader, directory, rejects);
+            parseSalesLines(reader, catalog, salesmanOrdinal, consumer, rejects);
+            lines = reader.getLineNumber();
+        } catch (IOException e) {
+            LOGGER.severe(file.getName() + " file not found");
+            read = false;
         }
-        for (File file : folder.listFiles()) {
-            processFile(file, products, salesmen, sales);
+        recordFile(file, event, lines, rejected);
+        return read;
+    }
+
+    /**
+     * Reads what a sales file adds to the aggregate. A file of at least twice the
+     * range size of the options is split, after its header line, into byte
+     * ranges aligned to lines, which the workers parse at the same time before
+     * their totals are merged. The calling thread parses every range no worker
+     * has started yet, so it never waits on the queue of the workers, even when
+     * it is one of them. Compressed files cannot be split and are read by the
+     * calling thread.
+     * <p>
+     * Every range opens the file again, so a worker only parses a range while it
+     * holds a permit of the open files, and leaves it to the calling thread when
+     * none is left. The calling thread parses its ranges one at a time under the
+     * permit it took for the file.
+     * <p>
+     * A digest given by the caller is fed from the same pass that parses the
+     * file, so the content is read once. A file read by one reader feeds its
+     * bytes to the digest; a split file feeds the bytes of its header, then the
+     * SHA-256 of every range, in the order of the file.
+     *
+     * @param file      The file to be processed.
+     * @param catalog   The catalog used to resolve the products of the file.
+     * @param directory The directory used to resolve the salesman of the file.
+     * @param options   The size of the ranges.
+     * @param workers   The threads that parse the ranges.
+     * @param openFiles The permits of the files open at the same time, one of
+     *                  which is held by the calling thread.
+     * @param digest    The digest of the content of the file, or null.
+     * @return The contribution of the file, or null if the file could not be
+     *         read to its end.
+     */
+    FileContribution readContribution(File file, ProductCatalog catalog, SalesmanDirectory directory,
+            IngestionOptions options, Executor workers, Semaphore openFiles, MessageDigest digest) {
+        FileContribution contribution = new FileContribution();
+        long size = file.length();
+        if (size / 2 < options.getRangeSize() || PipelinedInflater.isCompressed(file.toPath())) {
+            return streamFile(file, catalog, directory, contribution, digest) ? contribution : null;
         }
-        return sales.stream().filter(sale -> sale.getSoldProducts() != null && !sale.getSoldProducts().isEmpty()
-                && sale.getSalesman() != null).toList();
+
+        SalesFileEvent event = new SalesFileEvent();
+        event.begin();
+        long[] rejected = new long[REJECT_REASONS.length];
+        ObjLongConsumer<RejectReason> rejects = rejectsOf(file.getName(), rejected);
+        long lines = 0;
+        boolean read = true;
+        try {
+            int salesmanOrdinal;
+            long bodyStart;
+            try (MappedCsvReader reader = new MappedCsvReader(file.toPath(), digest)) {
+                salesmanOrdinal = readHeader(reader, directory, rejects);
+                bodyStart = reader.getOffset();
+                lines = reader.getLineNumber();
+            }
+            long rangeCount = Math.max(1, (size - bodyStart) / options.getRangeSize());
+            long rangeLength = (size - bodyStart + rangeCount - 1) / rangeCount;
+            List<FutureTask<SalesFileRange>> ranges = new ArrayList<>();
+            List<MessageDigest> rangeDigests = new ArrayList<>();
+            for (long i = 0; i < rangeCount; i++) {
+                long rangeStart = bodyStart + i * rangeLength;
+                long rangeEnd = Math.min(rangeStart + rangeLength, size);
+                MessageDigest rangeDigest = digest != null ? newDigest("SHA-256") : null;
+                FutureTask<SalesFileRange> range = new FutureTask<>(
+                        () -> parseRange(file, rangeStart, rangeEnd, catalog, salesmanOrdinal, rangeDigest));
+                ranges.add(range);
+                rangeDigests.add(rangeDigest);
+                if (i > 0) {
+                    workers.execute(() -> runWithPermit(range, openFiles));
+                }
+            }
+            for (int r = 0; r < ranges.size(); r++) {
+                FutureTask<SalesFileRange> range = ranges.get(r);
+                range.run();
+                SalesFileRange parsed = awaitRange(range);
+                if (digest != null) {
+                    digest.update(rangeDigests.get(r).digest());
+                }
+                contribution.addAll(parsed.getContribution());
+                for (int i = 0; i < parsed.getRejectedCount(); i++) {
+                    rejects.accept(parsed.getRejectReason(i), lines + parsed.getRejectedLineNumber(i));
+                }
+                lines += parsed.getLines();
+            }
+        } catch (IOException e) {
+            LOGGER.severe(file.getName() + " file not found");
+            read = false;
+        }
+        recordFile(file, event, lines, rejected);
+        return read ? contribution : null;
     }
 
     /**
-     * Processes a file and extracts data to populate the given lists of products,
-     * salesmen, and sales.
+     * Runs the parsing of a range if a permit of the open files is free. The
+     * range is otherwise left to the thread that reads the file.
      *
-     * @param file     The file to be processed.
-     * @param products The list of products to populate with data from the file.
-     * @param salesmen The list of salesmen to populate with data from the file.
-     * @param sales    The list of sales to populate with data from the file.
+     * @param range     the task of the range
+     * @param openFiles the permits of the files open at the same time
      */
-    private void processFile(File file, List<Product> products, List<Salesman> salesmen, List<Sale> sales) {
-        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-            String line;
-            boolean isFirstLine = true;
-            Sale sale = new Sale();
-            List<ProductSold> productsSold = new ArrayList<>();
-            while ((line = br.readLine()) != null) {
-                String[] fragments = line.split(";");
-                if (fragments.length == 2) {
-                    if (isFirstLine) {
-                        isFirstLine = false;
-                        sale.setSalesman(getSalesman(fragments, salesmen));
+    private static void runWithPermit(FutureTask<SalesFileRange> range, Semaphore openFiles) {
+        if (openFiles.tryAcquire()) {
+            try {
+                range.run();
+            } finally {
+                openFiles.release();
+            }
+        }
+    }
+
+    /**
+     * Parses a byte range of the body of a large sales file.
+     *
+     * @param file            the file to be processed
+     * @param start           the offset of the first byte of the range
+     * @param end             the offset of the byte after the range
+     * @param catalog         the catalog used to resolve the products of the file
+     * @param salesmanOrdinal the ordinal of the salesman of the file, or -1 if it
+     *                        is unknown
+     * @param digest          the digest of the bytes of the range, or null
+     * @return the totals, lines and rejected lines of the range
+     * @throws IOException if the file cannot be read
+     */
+    private SalesFileRange parseRange(File file, long start, long end, ProductCatalog catalog,
+            int salesmanOrdinal, MessageDigest digest) throws IOException {
+        SalesFileRange range = new SalesFileRange();
+        try (MappedCsvReader reader = new MappedCsvReader(file.toPath(), start, end, digest)) {
+            parseSalesLines(reader, catalog, salesmanOrdinal, range.getContribution(), range::reject);
+            range.setLines(reader.getLineNumber());
+        }
+        return range;
+    }
+
+    /**
+     * Checks the maximum number of lines asked to a report.
+     *
+     * @param limit the maximum number of lines
+     */
+    private static void checkLimit(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("The limit must be positive, got " + limit);
+        }
+    }
+
+    /**
+     * Creates a message digest of an algorithm every Java platform provides.
+     *
+     * @param algorithm the name of the algorithm
+     * @return the digest
+     */
+    static MessageDigest newDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(algorithm + " is not available", e);
+        }
+    }
+
+    /**
+     * Waits for the parsing of a range, rethrowing its exception.
+     *
+     * @param range the task of the range
+     * @return the parsed range
+     * @throws IOException if the file cannot be read
+     */
+    private SalesFileRange awaitRange(FutureTask<SalesFileRange> range) throws IOException {
+        try {
+            return range.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The reading of the sales files was interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("An error occurred while reading the sales files", e.getCause());
+        }
+    }
+
+    /**
+     * Returns the sink of the rejected lines of a file: it counts them by reason
+     * and records them in the quarantine file.
+     *
+     * @param fileName the name of the file
+     * @param rejected the counts of rejected lines, indexed by the ordinal of
+     *                 their {@link RejectReason}
+     * @return the sink of the rejected lines
+     */
+    private ObjLongConsumer<RejectReason> rejectsOf(String fileName, long[] rejected) {
+        return (reason, lineNumber) -> {
+            rejected[reason.ordinal()]++;
+            quarantine(fileName, lineNumber, reason);
+        };
+    }
+
+    /**
+     * Reads the lines of a sales file up to its header, the first line with two
+     * fields, which holds the document number of the salesman.
+     *
+     * @param reader    the reader at the beginning of the file
+     * @param directory the directory used to resolve the salesman
+     * @param rejects   the sink of the rejected lines
+     * @return the ordinal of the salesman, or -1 if the file has no valid header
+     *         or the salesman is unknown
+     * @throws IOException if the file cannot be read
+     */
+    private int readHeader(MappedCsvReader reader, SalesmanDirectory directory,
+            ObjLongConsumer<RejectReason> rejects) throws IOException {
+        while (reader.nextLine()) {
+            if (reader.getFieldCount() == 2) {
+                RejectReason reason = numberRejectReason(reader.parseLong(1));
+                if (reason != null) {
+                    rejects.accept(reason, reader.getLineNumber());
+                    return -1;
+                }
+                return directory.ordinalOf(reader.getParsedLong());
+            }
+            if (!isBlankLine(reader)) {
+                rejects.accept(RejectReason.WRONG_FIELD_COUNT, reader.getLineNumber());
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Validates the sales lines of a reader, from its current line to its end,
+     * and passes the valid ones to a consumer.
+     *
+     * @param reader          the reader after the header of the file
+     * @param catalog         the catalog used to resolve the products
+     * @param salesmanOrdinal the ordinal of the salesman of the file, or -1 if it
+     *                        is unknown
+     * @param consumer        the consumer of the valid lines
+     * @param rejects         the sink of the rejected lines
+     * @throws IOException if the file cannot be read
+     */
+    private void parseSalesLines(MappedCsvReader reader, ProductCatalog catalog, int salesmanOrdinal,
+            SalesLineConsumer consumer, ObjLongConsumer<RejectReason> rejects) throws IOException {
+        while (reader.nextLine()) {
+            RejectReason reason = null;
+            if (reader.getFieldCount() != 2) {
+                if (!isBlankLine(reader)) {
+                    reason = RejectReason.WRONG_FIELD_COUNT;
+                }
+            } else {
+                reason = numberRejectReason(reader.parseInt(1));
+                if (reason == null) {
+                    int quantity = (int) reader.getParsedLong();
+                    int productOrdinal = getProductOrdinal(reader, catalog);
+                    if (quantity <= 0) {
+                        reason = RejectReason.NON_POSITIVE_QUANTITY;
+                    } else if (salesmanOrdinal < 0) {
+                        reason = RejectReason.UNKNOWN_SALESMAN;
+                    } else if (productOrdinal < 0) {
+                        reason = RejectReason.UNKNOWN_PRODUCT;
+                    } else if (!fitsInLong(catalog.getUnitPriceCents(productOrdinal), quantity)) {
+                        reason = RejectReason.OVERFLOW;
                     } else {
-                        productsSold.add(getProductSold(fragments, products));
+                        consumer.accept(salesmanOrdinal, productOrdinal, quantity);
                     }
                 }
-                sale.setSoldProducts(productsSold);
             }
-            sales.add(sale);
+            if (reason != null) {
+                rejects.accept(reason, reader.getLineNumber());
+            }
+        }
+    }
+
+    /**
+     * Maps the result of a parse of the reader to the reason of the rejection of
+     * its line.
+     *
+     * @param parseResult the result of a parse of {@link MappedCsvReader}
+     * @return the reason, or null if the field is a valid number
+     */
+    private static RejectReason numberRejectReason(int parseResult) {
+        switch (parseResult) {
+            case MappedCsvReader.VALID:
+                return null;
+            case MappedCsvReader.OUT_OF_RANGE:
+                return RejectReason.OVERFLOW;
+            default:
+                return RejectReason.NOT_A_NUMBER;
+        }
+    }
+
+    /**
+     * Checks if the amount of a line, its unit price times its quantity, fits in
+     * a long number of cents.
+     *
+     * @param unitPriceCents the unit price in cents
+     * @param quantity       the quantity sold
+     * @return true if the product does not overflow
+     */
+    private static boolean fitsInLong(long unitPriceCents, long quantity) {
+        return Math.multiplyHigh(unitPriceCents, quantity) == (unitPriceCents * quantity) >> 63;
+    }
+
+    /**
+     * Records a rejected line in the quarantine file, if there is one. A failure
+     * to write it is logged and does not stop the reading.
+     *
+     * @param fileName   the name of the file of the line
+     * @param lineNumber the number of the line
+     * @param reason     why the line was rejected
+     */
+    private void quarantine(String fileName, long lineNumber, RejectReason reason) {
+        if (quarantine == null) {
+            return;
+        }
+        try {
+            quarantine.reject(fileName, lineNumber, reason);
         } catch (IOException e) {
-            LOGGER.severe(file.getName() + " file not found");
+            LOGGER.log(Level.WARNING, "Line {0} of {1} could not be quarantined: {2}",
+                    new Object[] { lineNumber, fileName, e.getMessage() });
         }
     }
 
     /**
-     * Represents a salesman.
+     * Writes the rows of the quarantine file that are still buffered, so they are
+     * not lost if the process is stopped.
      */
-    private Salesman getSalesman(String[] fragments, List<Salesman> salesmen) {
-        return salesmen.stream()
-                .filter(salesman -> salesman.getDocumentNumber() == Long.parseLong(fragments[1])).findFirst()
-                .orElse(null);
+    private void flushQuarantine() {
+        if (quarantine == null) {
+            return;
+        }
+        try {
+            quarantine.flush();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "The quarantine file could not be written: {0}", e.getMessage());
+        }
     }
 
     /**
-     * Represents a product sold, including the product itself and the quantity
-     * sold.
+     * Checks if the current line of a reader is empty.
+     *
+     * @param reader the reader positioned on a line
+     * @return true if the line has no characters
      */
-    private ProductSold getProductSold(String[] fragments, List<Product> products) {
-        return new ProductSold().setProduct(getProduct(fragments[0], products))
-                .setSoldQuantity(Integer.parseInt(fragments[1]));
+    private boolean isBlankLine(MappedCsvReader reader) {
+        return reader.getFieldCount() == 1 && reader.getFieldLength(0) == 0;
     }
 
     /**
-     * Represents a product.
+     * Adds the counts of a sales file to the {@link PipelineMetrics}, once per
+     * file so the parsing loop only touches local variables, and commits its
+     * Flight Recorder event if it is enabled.
+     *
+     * @param file     the file read
+     * @param event    the event of the file, begun before the reading
+     * @param lines    the number of lines of the file
+     * @param rejected the number of rejected lines, indexed by the ordinal of
+     *                 their {@link RejectReason}
      */
-    private Product getProduct(String productId, List<Product> products) {
-        return products.stream().filter(product -> product.getProductId().equals(productId)).findFirst().orElse(null);
+    private void recordFile(File file, SalesFileEvent event, long lines, long[] rejected) {
+        long size = file.length();
+        event.end();
+        PipelineMetrics metrics = PipelineMetrics.get();
+        metrics.fileRead(size, lines);
+        long rejectedLines = 0;
+        for (RejectReason reason : REJECT_REASONS) {
+            metrics.linesRejected(reason, rejected[reason.ordinal()]);
+            rejectedLines += rejected[reason.ordinal()];
+        }
+        if (rejectedLines > 0) {
+            flushQuarantine();
+        }
+        if (event.shouldCommit()) {
+            event.fileName = file.getName();
+            event.size = size;
+            event.lines = lines;
+            event.rejectedLines = rejectedLines;
+            event.commit();
+        }
+    }
+
+    /**
+     * Reads the document number of the salesman of a file, from its first line
+     * with two fields.
+     *
+     * @param file The file to be read.
+     * @return The document number, or -1 if the file has no such line, the
+     *         number is not valid or the file cannot be read.
+     */
+    long readSalesmanDocument(File file) {
+        try (MappedCsvReader reader = new MappedCsvReader(file.toPath())) {
+            while (reader.nextLine()) {
+                if (reader.getFieldCount() == 2) {
+                    return reader.parseLong(1) == MappedCsvReader.VALID ? reader.getParsedLong() : -1;
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.severe(file.getName() + " file not found");
+        }
+        return -1;
+    }
+
+    /**
+     * Resolves the product of the first field of the current line. Numeric IDs
+     * are looked up without building a String.
+     *
+     * @param reader  the reader positioned on a sales line
+     * @param catalog the catalog of available products
+     * @return the ordinal of the product, or -1 if it is not in the catalog
+     */
+    private int getProductOrdinal(MappedCsvReader reader, ProductCatalog catalog) {
+        long numericId = reader.getCanonicalLong(0);
+        if (numericId >= 0) {
+            return catalog.ordinalOf(numericId);
+        }
+        return catalog.ordinalOf(reader.getString(0));
     }
 
     /**
@@ -186,84 +1017,400 @@ public class FileManager {
         if (sales == null || sales.isEmpty()) {
             throw new IllegalArgumentException("The list of sales is null or empty");
         }
+        writeSalesMenReport(SalesAggregator.aggregate(sales), filePath);
+    }
 
-        List<SalesmanReport> salesmanReports = new ArrayList<>();
-        sales.stream().map(Sale::getSalesman).distinct().forEach(salesman -> {
-            SalesmanReport salesmanReport = new SalesmanReport();
-            salesmanReport.setFullName(salesman.getFirstName() + " " + salesman.getLastName());
-            salesmanReport.setTotalSales((int) calculateCollection(salesman, sales));
-            salesmanReports.add(salesmanReport);
-        });
+    /**
+     * Writes a salesmen report to a file from the totals computed by a
+     * {@link SalesAggregator}.
+     *
+     * @param aggregate the revenue of every salesman
+     * @param filePath  the path of the file to write the report to
+     */
+    public void writeSalesMenReport(SalesAggregate aggregate, String filePath) {
+        writeSalesMenReport(aggregate, filePath, Integer.MAX_VALUE);
+    }
 
-        salesmanReports.sort((s1, s2) -> s2.getTotalSales() - s1.getTotalSales());
+    /**
+     * Writes the top salesmen by revenue to a file. Salesmen are selected with a
+     * bounded heap, so only the written lines are ever sorted. Ties are broken
+     * by the order of the salesmen in the directory.
+     *
+     * @param aggregate the revenue of every salesman
+     * @param filePath  the path of the file to write the report to
+     * @param limit     the maximum number of salesmen to write
+     * @throws IllegalArgumentException if the aggregate has no sales or the limit
+     *                                  is not positive
+     */
+    public void writeSalesMenReport(SalesAggregate aggregate, String filePath, int limit) {
+        if (aggregate == null || aggregate.getSalesmanCount() == 0) {
+            throw new IllegalArgumentException("The list of sales is null or empty");
+        }
+        checkLimit(limit);
 
-        createFolderIfNotExist(filePath);
+        PipelineMetrics metrics = PipelineMetrics.get();
+        ReportWriteEvent event = new ReportWriteEvent();
+        event.begin();
+        long start = metrics.startStage(PipelineStage.SORT);
+        TopK topSalesmen = new TopK(Math.min(limit, aggregate.getSalesmanCount()));
+        for (int i = 0; i < aggregate.getSalesmanCount(); i++) {
+            topSalesmen.offer(aggregate.getSalesmanRevenueCents(i), i);
+        }
+        int[] indexes = topSalesmen.drainTieBreakers();
+        metrics.endStage(PipelineStage.SORT, start);
 
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(filePath))) {
-            for (SalesmanReport salesmanReport : salesmanReports) {
-                bw.write(salesmanReport.getFullName() + ";" + salesmanReport.getTotalSales());
-                bw.newLine();
+        start = metrics.startStage(PipelineStage.WRITE);
+        try (ReportFileWriter writer = new ReportFileWriter(Path.of(filePath))) {
+            for (int index : indexes) {
+                Salesman salesman = aggregate.getSalesman(index);
+                writer.append(salesman.getFirstName()).append(' ').append(salesman.getLastName()).append(';')
+                        .append(Money.toUnits(aggregate.getSalesmanRevenueCents(index))).newLine();
             }
+            writer.commit();
         } catch (IOException e) {
-            e.printStackTrace();
+            throw new IllegalStateException("The salesmen report could not be written to " + filePath, e);
+        } finally {
+            metrics.endStage(PipelineStage.WRITE, start);
+            commitReportEvent(event, filePath, indexes.length);
         }
     }
 
     /**
-     * Calculates the total collection amount for a given salesman based on the
-     * sales data.
+     * Writes a report of products sold to a file.
      *
-     * @param salesman The salesman for whom the collection amount needs to be
-     *                 calculated.
-     * @param sales    The list of sales data.
-     * @return The total collection amount for the given salesman.
+     * @param sales    The list of sales.
+     * @param products The list of available products.
+     * @param filePath The path of the file to write the report to.
      */
-    private double calculateCollection(Salesman salesman, List<Sale> sales) {
-        return sales.stream().filter(sale -> sale.getSalesman().equals(salesman))
-                .mapToDouble(sale -> sale.getSoldProducts().stream()
-                        .mapToDouble(
-                                productSold -> productSold.getProduct().getUnitPrice() * productSold.getSoldQuantity())
-                        .sum())
-                .sum();
+    public void writeProductsReport(List<Sale> sales, List<Product> products, String filePath) {
+        if (products == null || products.isEmpty()) {
+            throw new IllegalArgumentException("The list of products is null or empty");
+        }
+        writeProductsReport(sales, new ProductCatalog(products), filePath);
     }
 
     /**
-     * Writes a report of products sold to a file.
+     * Writes a report of products sold to a file, resolving the products through
+     * the catalog index.
      *
-     * @param productsSold The list of products sold.
-     * @param filePath     The path of the file to write the report to.
+     * @param sales    The list of sales.
+     * @param catalog  The catalog of available products.
+     * @param filePath The path of the file to write the report to.
      */
-    public void writeProductsReport(List<Sale> sales, List<Product> products, String filePath) {
+    public void writeProductsReport(List<Sale> sales, ProductCatalog catalog, String filePath) {
         if (sales == null || sales.isEmpty()) {
             throw new IllegalArgumentException("The list of sales is null or empty");
         }
 
-        if (products == null || products.isEmpty()) {
+        if (catalog == null || catalog.isEmpty()) {
             throw new IllegalArgumentException("The list of products is null or empty");
         }
 
-        List<ProductSold> productsSold = generateProductSoldList(sales, products);
-        List<ProductReport> productsReport = new ArrayList<>();
-        productsSold.stream().map(productSold -> {
-            ProductReport productReport = new ProductReport();
-            productReport.setProductName(productSold.getProduct().getProductName());
-            productReport.setTotalSold(
-                    Math.round(productSold.getSoldQuantity() * productSold.getProduct().getUnitPrice() * 100.0)
-                            / 100.0);
-            return productReport;
-        }).distinct().forEach(productsReport::add);
+        writeProductsReport(SalesAggregator.aggregate(sales, catalog), filePath);
+    }
 
-        productsReport.sort((p1, p2) -> (int) (p2.getTotalSold() - p1.getTotalSold()));
+    /**
+     * Writes a report of products sold to a file from the totals computed by a
+     * {@link SalesAggregator}.
+     *
+     * @param aggregate The quantity sold of every product.
+     * @param filePath  The path of the file to write the report to.
+     */
+    public void writeProductsReport(SalesAggregate aggregate, String filePath) {
+        writeProductsReport(aggregate, filePath, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Writes the top products by amount sold to a file. Products are selected
+     * with a bounded heap, so only the written lines are ever sorted. Ties are
+     * broken by the order of the products in the catalog.
+     *
+     * @param aggregate The quantity sold of every product.
+     * @param filePath  The path of the file to write the report to.
+     * @param limit     The maximum number of products to write.
+     * @throws IllegalArgumentException If the aggregate has no sales or the limit
+     *                                  is not positive.
+     */
+    public void writeProductsReport(SalesAggregate aggregate, String filePath, int limit) {
+        if (aggregate == null || aggregate.getProductCount() == 0) {
+            throw new IllegalArgumentException("The list of sales is null or empty");
+        }
+        checkLimit(limit);
+
+        PipelineMetrics metrics = PipelineMetrics.get();
+        ReportWriteEvent event = new ReportWriteEvent();
+        event.begin();
+        long start = metrics.startStage(PipelineStage.SORT);
+        TopK topProducts = new TopK(Math.min(limit, aggregate.getProductCount()));
+        for (int i = 0; i < aggregate.getProductCount(); i++) {
+            topProducts.offer(aggregate.getProductRevenueCents(i), i);
+        }
+        int[] indexes = topProducts.drainTieBreakers();
+        metrics.endStage(PipelineStage.SORT, start);
+
+        start = metrics.startStage(PipelineStage.WRITE);
+        try (ReportFileWriter writer = new ReportFileWriter(Path.of(filePath))) {
+            for (int index : indexes) {
+                writer.append(aggregate.getProduct(index).getProductName()).append(';')
+                        .appendCents(aggregate.getProductRevenueCents(index)).newLine();
+            }
+            writer.commit();
+        } catch (IOException e) {
+            throw new IllegalStateException("The products report could not be written to " + filePath, e);
+        } finally {
+            metrics.endStage(PipelineStage.WRITE, start);
+            commitReportEvent(event, filePath, indexes.length);
+        }
+    }
+
+    /**
+     * Writes the best products of every salesman to a file, answered by the
+     * {@link SalesCube} of the aggregate. Salesmen are listed by revenue, and
+     * each one is followed by the products they collected the most revenue
+     * with, on lines of salesman, product and revenue. Only the cells of the
+     * listed salesmen are visited.
+     *
+     * @param aggregate the totals of salesmen and products, built with a cube
+     * @param filePath  the path of the file to write the report to
+     * @param limit     the maximum number of products of each salesman
+     * @throws IllegalArgumentException if the aggregate has no sales or no cube,
+     *                                  or the limit is not positive
+     */
+    public void writeSalesmanProductsReport(SalesAggregate aggregate, String filePath, int limit) {
+        if (aggregate == null || aggregate.getSalesmanCount() == 0) {
+            throw new IllegalArgumentException("The list of sales is null or empty");
+        }
+        SalesCube cube = aggregate.getCube();
+        if (cube == null) {
+            throw new IllegalArgumentException("The sales were aggregated without a cube");
+        }
+        checkLimit(limit);
+
+        PipelineMetrics metrics = PipelineMetrics.get();
+        ReportWriteEvent event = new ReportWriteEvent();
+        event.begin();
+        long start = metrics.startStage(PipelineStage.WRITE);
+        long rows = 0;
+        try (ReportFileWriter writer = new ReportFileWriter(Path.of(filePath))) {
+            for (int salesmanOrdinal : cube.topSalesmen(aggregate.getSalesmanCount())) {
+                Salesman salesman = aggregate.getDirectory().getSalesmanAt(salesmanOrdinal);
+                for (int productOrdinal : cube.topProductsOf(salesmanOrdinal, limit)) {
+                    writer.append(salesman.getFirstName()).append(' ').append(salesman.getLastName()).append(';')
+                            .append(aggregate.getCatalog().getProductAt(productOrdinal).getProductName()).append(';')
+                            .appendCents(cube.getRevenueCents(salesmanOrdinal, productOrdinal)).newLine();
+                    rows++;
+                }
+            }
+            writer.commit();
+        } catch (IOException e) {
+            throw new IllegalStateException("The salesman products report could not be written to " + filePath, e);
+        } finally {
+            metrics.endStage(PipelineStage.WRITE, start);
+            commitReportEvent(event, filePath, rows);
+        }
+    }
+
+    /**
+     * Writes the salesmen report sorting it with an {@link ExternalReportSorter},
+     * so the memory used by the sort is bounded by the given budget whatever the
+     * number of salesmen. Sorted runs are spilled next to the report.
+     *
+     * @param aggregate    the revenue of every salesman
+     * @param filePath     the path of the file to write the report to
+     * @param memoryBudget the approximate number of bytes of report lines kept in
+     *                     memory
+     */
+    public void writeSalesMenReportExternal(SalesAggregate aggregate, String filePath, long memoryBudget) {
+        writeSalesMenReportExternal(aggregate, filePath, memoryBudget, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Writes the top salesmen by revenue to a file, sorting them with an
+     * {@link ExternalReportSorter} within the given memory budget. Only the
+     * written lines are kept when the sorted runs are merged.
+     *
+     * @param aggregate    the revenue of every salesman
+     * @param filePath     the path of the file to write the report to
+     * @param memoryBudget the approximate number of bytes of report lines kept in
+     *                     memory
+     * @param limit        the maximum number of salesmen to write
+     * @throws IllegalArgumentException if the aggregate has no sales or the limit
+     *                                  is not positive
+     */
+    public void writeSalesMenReportExternal(SalesAggregate aggregate, String filePath, long memoryBudget,
+            int limit) {
+        if (aggregate == null || aggregate.getSalesmanCount() == 0) {
+            throw new IllegalArgumentException("The list of sales is null or empty");
+        }
+        checkLimit(limit);
 
         createFolderIfNotExist(filePath);
+        PipelineMetrics metrics = PipelineMetrics.get();
+        ReportWriteEvent event = new ReportWriteEvent();
+        event.begin();
+        Path target = Path.of(filePath);
+        try (ExternalReportSorter sorter = new ExternalReportSorter(target.toAbsolutePath().getParent(),
+                memoryBudget)) {
+            long start = metrics.startStage(PipelineStage.SORT);
+            for (int i = 0; i < aggregate.getSalesmanCount(); i++) {
+                Salesman salesman = aggregate.getSalesman(i);
+                sorter.add(aggregate.getSalesmanRevenueCents(i), i,
+                        salesman.getFirstName() + " " + salesman.getLastName());
+            }
+            metrics.endStage(PipelineStage.SORT, start);
+            start = metrics.startStage(PipelineStage.WRITE);
+            sorter.writeTo(target, (writer, cents) -> writer.append(Money.toUnits(cents)), limit);
+            metrics.endStage(PipelineStage.WRITE, start);
+        } catch (IOException e) {
+            throw new IllegalStateException("The salesmen report could not be written to " + filePath, e);
+        } finally {
+            commitReportEvent(event, filePath, Math.min(aggregate.getSalesmanCount(), limit));
+        }
+    }
+
+    /**
+     * Writes the products report sorting it with an {@link ExternalReportSorter},
+     * so the memory used by the sort is bounded by the given budget whatever the
+     * number of products. Sorted runs are spilled next to the report.
+     *
+     * @param aggregate    The quantity sold of every product.
+     * @param filePath     The path of the file to write the report to.
+     * @param memoryBudget The approximate number of bytes of report lines kept in
+     *                     memory.
+     */
+    public void writeProductsReportExternal(SalesAggregate aggregate, String filePath, long memoryBudget) {
+        writeProductsReportExternal(aggregate, filePath, memoryBudget, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Writes the top products by amount sold to a file, sorting them with an
+     * {@link ExternalReportSorter} within the given memory budget. Only the
+     * written lines are kept when the sorted runs are merged.
+     *
+     * @param aggregate    The quantity sold of every product.
+     * @param filePath     The path of the file to write the report to.
+     * @param memoryBudget The approximate number of bytes of report lines kept in
+     *                     memory.
+     * @param limit        The maximum number of products to write.
+     * @throws IllegalArgumentException If the aggregate has no sales or the limit
+     *                                  is not positive.
+     */
+    public void writeProductsReportExternal(SalesAggregate aggregate, String filePath, long memoryBudget,
+            int limit) {
+        if (aggregate == null || aggregate.getProductCount() == 0) {
+            throw new IllegalArgumentException("The list of sales is null or empty");
+        }
+        checkLimit(limit);
 
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(filePath))) {
-            for (ProductReport productReport : productsReport) {
-                bw.write(productReport.getProductName() + ";" + productReport.getTotalSold());
-                bw.newLine();
+        createFolderIfNotExist(filePath);
+        PipelineMetrics metrics = PipelineMetrics.get();
+        ReportWriteEvent event = new ReportWriteEvent();
+        event.begin();
+        Path target = Path.of(filePath);
+        try (ExternalReportSorter sorter = new ExternalReportSorter(target.toAbsolutePath().getParent(),
+                memoryBudget)) {
+            long start = metrics.startStage(PipelineStage.SORT);
+            for (int i = 0; i < aggregate.getProductCount(); i++) {
+                sorter.add(aggregate.getProductRevenueCents(i), i, aggregate.getProduct(i).getProductName());
             }
+            metrics.endStage(PipelineStage.SORT, start);
+            start = metrics.startStage(PipelineStage.WRITE);
+            sorter.writeTo(target, ReportFileWriter::appendCents, limit);
+            metrics.endStage(PipelineStage.WRITE, start);
         } catch (IOException e) {
-            e.printStackTrace();
+            throw new IllegalStateException("The products report could not be written to " + filePath, e);
+        } finally {
+            commitReportEvent(event, filePath, Math.min(aggregate.getProductCount(), limit));
+        }
+    }
+
+    /**
+     * Writes the salesmen and products reports at the same time, the salesmen
+     * report on a thread of its own. Each report is published only once it is
+     * complete, so a failure of one leaves the other one written.
+     *
+     * @param aggregate          the totals of salesmen and products
+     * @param salesmenReportPath the path of the salesmen report
+     * @param productsReportPath the path of the products report
+     * @param limit              the maximum number of lines of each report
+     */
+    public void writeReports(SalesAggregate aggregate, String salesmenReportPath, String productsReportPath,
+            int limit) {
+        writeConcurrently(() -> writeSalesMenReport(aggregate, salesmenReportPath, limit),
+                () -> writeProductsReport(aggregate, productsReportPath, limit));
+    }
+
+    /**
+     * Writes the salesmen and products reports at the same time, sorting them
+     * with {@link ExternalReportSorter}s. Each sort is bounded by the memory
+     * budget, so up to twice the budget is used while both are running.
+     *
+     * @param aggregate          the totals of salesmen and products
+     * @param salesmenReportPath the path of the salesmen report
+     * @param productsReportPath the path of the products report
+     * @param memoryBudget       the approximate number of bytes of report lines
+     *                           kept in memory by each sort
+     * @param limit              the maximum number of lines of each report
+     */
+    public void writeReportsExternal(SalesAggregate aggregate, String salesmenReportPath,
+            String productsReportPath, long memoryBudget, int limit) {
+        writeConcurrently(() -> writeSalesMenReportExternal(aggregate, salesmenReportPath, memoryBudget, limit),
+                () -> writeProductsReportExternal(aggregate, productsReportPath, memoryBudget, limit));
+    }
+
+    /**
+     * Runs the first report on a report writer thread and the second one on the
+     * calling thread, then waits for both. The exception of the first report
+     * that failed is thrown, with the other one suppressed.
+     */
+    private void writeConcurrently(Runnable firstReport, Runnable secondReport) {
+        Future<?> first = REPORT_WRITERS.submit(firstReport);
+        RuntimeException failure = null;
+        try {
+            secondReport.run();
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+        try {
+            first.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure = addFailure(failure, new IllegalStateException("The writing of the reports was interrupted", e));
+        } catch (ExecutionException e) {
+            failure = addFailure(failure, e.getCause() instanceof RuntimeException runtimeException
+                    ? runtimeException
+                    : new IllegalStateException("An error occurred while writing the reports", e.getCause()));
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Returns the first failure of the reports, keeping the next one as
+     * suppressed.
+     */
+    private static RuntimeException addFailure(RuntimeException failure, RuntimeException next) {
+        if (failure == null) {
+            return next;
+        }
+        failure.addSuppressed(next);
+        return failure;
+    }
+
+    /**
+     * Commits the Flight Recorder event of a report if it is enabled.
+     *
+     * @param event    the event of the report, begun before the sort
+     * @param filePath the path of the report
+     * @param rows     the number of rows of the report
+     */
+    private void commitReportEvent(ReportWriteEvent event, String filePath, long rows) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.path = filePath;
+            event.rows = rows;
+            event.commit();
         }
     }
 
@@ -291,6 +1438,20 @@ public class FileManager {
      *         with the same ID.
      */
     public List<ProductSold> generateProductSoldList(List<Sale> sales, List<Product> products) {
+        return generateProductSoldList(sales, new ProductCatalog(products));
+    }
+
+    /**
+     * Generates a list of ProductSold objects by extracting the sold products from
+     * each sale in the given list of sales, resolving the products through the
+     * catalog index.
+     *
+     * @param sales   The list of Sale objects.
+     * @param catalog The catalog of available products.
+     * @return A list of ProductSold objects with summed quantities for products
+     *         with the same ID.
+     */
+    public List<ProductSold> generateProductSoldList(List<Sale> sales, ProductCatalog catalog) {
         List<ProductSold> productSoldList = new ArrayList<>();
         Map<String, Integer> productQuantityMap = new HashMap<>();
 
@@ -307,7 +1468,7 @@ public class FileManager {
             String productId = entry.getKey();
             int quantity = entry.getValue();
 
-            Product product = getProduct(productId, products);
+            Product product = catalog.getProduct(productId);
 
             if (product != null) {
                 ProductSold productSold = new ProductSold();
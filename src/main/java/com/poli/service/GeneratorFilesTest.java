@@ -1,5 +1,6 @@
 package com.poli.service;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
@@ -17,13 +18,31 @@ import com.poli.pojo.Salesman;
  */
 public class GeneratorFilesTest {
     private static final Logger logger = Logger.getLogger(GeneratorFilesTest.class.getName());
-    private final Random random = new Random();
+    private static final int PRODUCTS_COUNT = 50;
+    private final Random random;
 
-    private static final String[] FIRST_NAMES = { "Juan", "Maria", "Carlos", "Ana", "David", "Sofia", "Jose", "Laura",
+    static final String[] FIRST_NAMES = { "Juan", "Maria", "Carlos", "Ana", "David", "Sofia", "Jose", "Laura",
             "Francisco", "Carmen" };
-    private static final String[] LAST_NAMES = { "Gomez", "Lopez", "Martinez", "Garcia", "Rodriguez", "Perez",
+    static final String[] LAST_NAMES = { "Gomez", "Lopez", "Martinez", "Garcia", "Rodriguez", "Perez",
             "Sanchez", "Torres", "Ramirez", "Castro" };
 
+    /**
+     * Creates a generator with a random seed.
+     */
+    public GeneratorFilesTest() {
+        this.random = new Random();
+    }
+
+    /**
+     * Creates a generator that produces the same files every time it is given the
+     * same seed.
+     *
+     * @param seed the seed of the random number generator
+     */
+    public GeneratorFilesTest(long seed) {
+        this.random = new Random(seed);
+    }
+
     /**
      * Creates a file with sales data for a specific salesperson.
      * 
@@ -32,15 +51,35 @@ public class GeneratorFilesTest {
      * @param documentNumber   The ID of the salesperson.
      */
     public void createSalesMenFile(int randomSalesCount, String name, String documentType, long documentNumber) {
+        createSalesMenFile(randomSalesCount, name, documentType, documentNumber, WorkloadProfile.uniform());
+    }
+
+    /**
+     * Creates a file with sales data for a specific salesperson, shaped by a
+     * workload profile. The profile may make the file much larger or smaller than
+     * the requested number of sales and mix malformed lines among them.
+     * 
+     * @param randomSalesCount The usual number of random sales to generate.
+     * @param name             The name of the salesperson.
+     * @param documentType     The type of document of the salesperson.
+     * @param documentNumber   The ID of the salesperson.
+     * @param profile          The shape of the sales.
+     */
+    public void createSalesMenFile(int randomSalesCount, String name, String documentType, long documentNumber,
+            WorkloadProfile profile) {
         File directory = createDirectory("salesmen");
-        try (FileWriter fileWriter = new FileWriter(directory + "/" + name + "_" + documentNumber + ".csv")) {
+        try (BufferedWriter fileWriter = new BufferedWriter(
+                new FileWriter(directory + "/" + name + "_" + documentNumber + ".csv"))) {
 
             fileWriter.write(documentType + ";" + documentNumber + "\n");
 
-            for (int i = 0; i < randomSalesCount; i++) {
-                int productId = random.nextInt(50) + 1;
-                int quantity = random.nextInt(20) + 1;
-                fileWriter.write(productId + ";" + quantity + "\n");
+            WorkloadSampler sampler = new WorkloadSampler(profile, PRODUCTS_COUNT);
+            int salesCount = sampler.sampleLineCount(randomSalesCount, random);
+            StringBuilder line = new StringBuilder();
+            for (int i = 0; i < salesCount; i++) {
+                line.setLength(0);
+                sampler.appendLine(line, random);
+                fileWriter.append(line);
             }
 
             logger.info("File of sales for the vendor created successfully");
@@ -56,7 +95,7 @@ public class GeneratorFilesTest {
      */
     public void createProductsFile(int productsCount) {
         File directory = createDirectory("info");
-        try (FileWriter fileWriter = new FileWriter(directory + "/products.csv")) {
+        try (BufferedWriter fileWriter = new BufferedWriter(new FileWriter(directory + "/products.csv"))) {
             for (int i = 0; i < productsCount; i++) {
                 int productId = i + 1;
                 String productName = "Product-" + productId;
@@ -76,7 +115,7 @@ public class GeneratorFilesTest {
      */
     public List<Salesman> createSalesmanInfoFile(int salesmanCount) {
         File directory = createDirectory("info");
-        try (FileWriter fileWriter = new FileWriter(directory + "/salesmen_info.csv")) {
+        try (BufferedWriter fileWriter = new BufferedWriter(new FileWriter(directory + "/salesmen_info.csv"))) {
             List<Salesman> salesmen = new ArrayList<>();
             for (int i = 0; i < salesmanCount; i++) {
                 Salesman salesman = new Salesman();
@@ -0,0 +1,385 @@
+package com.poli.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The IncrementalProcessor class keeps the aggregate of the salesmen folder up
+ * to date between runs. It persists a manifest of the processed files (path,
+ * size, modification time and content hash) together with what every file
+ * contributed to the aggregate. On the next run only new or changed files are
+ * read: the old contribution of a changed file is subtracted before its new
+ * content is added, and the contribution of a deleted file is subtracted.
+ * <p>
+ * Contributions are stored as quantities, so revenues are always computed with
+ * the current prices. The state is discarded when the set of products or
+ * salesmen changes.
+ * <p>
+ * The state is written with a {@link BinaryBlockWriter}, as columns that are
+ * read back in bulk:
+ * <ul>
+ * <li>header: magic number, format version, fingerprint of the catalog and the
+ * directory, and the number of files</li>
+ * <li>files: the paths, then columns of sizes, modification times, SHA-256
+ * hashes, salesman ordinals and numbers of products</li>
+ * <li>products: columns of the product ordinals, quantities and line counts of
+ * every file, one file after the other</li>
+ * </ul>
+ * Ordinals can be stored since the fingerprint covers the IDs and document
+ * numbers in ordinal order: a state is only read with the catalog and the
+ * directory it was written with.
+ */
+public class IncrementalProcessor {
+    private static final Logger LOGGER = Logger.getLogger(IncrementalProcessor.class.getName());
+    private static final int MAGIC = 0x53414C53;
+    private static final int VERSION = 2;
+    private static final int HASH_LENGTH = 32;
+    private static final int PRODUCT_LENGTH = Integer.BYTES + 2 * Long.BYTES;
+
+    private final FileManager fileManager;
+    private final Path statePath;
+    private final IngestionOptions options;
+    private ProductCatalog loadedCatalog;
+    private SalesmanDirectory loadedDirectory;
+    private SalesAggregator aggregator;
+    private Map<String, ManifestEntry> manifest;
+
+    /**
+     * Creates an incremental processor.
+     *
+     * @param fileManager the file manager used to read the salesmen files
+     * @param statePath   the path of the file where the state is persisted
+     * @param options     the number of workers, the open files limit and the size
+     *                    of the ranges of large files used to check and read the
+     *                    files
+     */
+    public IncrementalProcessor(FileManager fileManager, String statePath, IngestionOptions options) {
+        this.fileManager = fileManager;
+        this.statePath = Path.of(statePath);
+        this.options = options;
+    }
+
+    /**
+     * Brings the aggregate of a salesmen folder up to date with the files it
+     * currently contains and persists the new state. The manifest and the running
+     * totals stay in memory, so later calls with the same catalog and directory
+     * do not read the persisted state again. This method is not thread safe.
+     *
+     * @param folderPath the path of the folder containing the files to be read
+     * @param catalog    the catalog of available products
+     * @param directory  the directory of known salesmen
+     * @return the aggregate of the sales of the folder, or null if the folder or
+     *         the inputs are not valid
+     */
+    public SalesAggregate update(String folderPath, ProductCatalog catalog, SalesmanDirectory directory) {
+        File[] files = fileManager.listSalesFiles(folderPath, catalog, directory);
+        if (files == null) {
+            return null;
+        }
+
+        if (catalog != loadedCatalog || directory != loadedDirectory) {
+            manifest = loadState(catalog, directory);
+            aggregator = new SalesAggregator(catalog, directory, options.isCubeEnabled());
+            for (ManifestEntry entry : manifest.values()) {
+                entry.getContribution().applyTo(aggregator, 1);
+            }
+            loadedCatalog = catalog;
+            loadedDirectory = directory;
+        }
+        Map<String, ManifestEntry> previous = new LinkedHashMap<>(manifest);
+
+        ManifestEntry[] oldEntries = new ManifestEntry[files.length];
+        ManifestEntry[] newEntries = new ManifestEntry[files.length];
+        PipelineMetrics metrics = PipelineMetrics.get();
+        long start = metrics.startStage(PipelineStage.INGEST);
+        ExecutorService workers = Executors.newFixedThreadPool(options.getParallelism());
+        Semaphore openFiles = new Semaphore(options.getMaxOpenFiles());
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int i = 0; i < files.length; i++) {
+                int index = i;
+                oldEntries[index] = previous.remove(files[index].getPath());
+                tasks.add(workers.submit(() -> {
+                    openFiles.acquireUninterruptibly();
+                    try {
+                        newEntries[index] = refresh(files[index], oldEntries[index], catalog, directory, workers,
+                                openFiles);
+                    } finally {
+                        openFiles.release();
+                    }
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The reading of the sales files was interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("An error occurred while reading the sales files", e.getCause());
+        } finally {
+            workers.shutdownNow();
+            metrics.endStage(PipelineStage.INGEST, start);
+        }
+
+        start = metrics.startStage(PipelineStage.AGGREGATE);
+        List<ManifestEntry> current = new ArrayList<>(files.length);
+        int ingested = 0;
+        int failed = 0;
+        for (int i = 0; i < files.length; i++) {
+            ManifestEntry oldEntry = oldEntries[i];
+            ManifestEntry newEntry = newEntries[i];
+            if (newEntry == null) {
+                // A file that could not be read is left out of the totals and the manifest, so it is read again
+                if (oldEntry != null) {
+                    oldEntry.getContribution().applyTo(aggregator, -1);
+                }
+                failed++;
+                continue;
+            }
+            if (oldEntry == null || newEntry.getContribution() != oldEntry.getContribution()) {
+                if (oldEntry != null) {
+                    oldEntry.getContribution().applyTo(aggregator, -1);
+                }
+                newEntry.getContribution().applyTo(aggregator, 1);
+                ingested++;
+            }
+            current.add(newEntry);
+        }
+        for (ManifestEntry removed : previous.values()) {
+            removed.getContribution().applyTo(aggregator, -1);
+        }
+        metrics.endStage(PipelineStage.AGGREGATE, start);
+
+        LOGGER.log(Level.INFO, "{0} files ingested, {1} files unchanged, {2} files removed, {3} files unreadable",
+                new Object[] { ingested, files.length - ingested - failed, previous.size(), failed });
+        manifest = new LinkedHashMap<>();
+        for (ManifestEntry entry : current) {
+            manifest.put(entry.getPath(), entry);
+        }
+        saveState(current, catalog, directory);
+        return aggregator.getAggregate();
+    }
+
+    /**
+     * Checks a file against its manifest entry and reads it again only if its
+     * size or modification time changed. The content hash is computed from the
+     * bytes the parse reads, so a changed file is read once. A file that changes
+     * while it is parsed is left out, as an unreadable file, and read again by
+     * the next update.
+     *
+     * @param file      the file to check
+     * @param entry     the manifest entry of the file, or null for a new file
+     * @param catalog   the catalog of available products
+     * @param directory the directory of known salesmen
+     * @param workers   the threads that parse the ranges of a large file
+     * @param openFiles the permits of the files open at the same time, one of
+     *                  which is held by the calling thread
+     * @return the entry of the file, the old one when the file did not change,
+     *         or null if the file could not be read or changed while it was read
+     */
+    private ManifestEntry refresh(File file, ManifestEntry entry, ProductCatalog catalog,
+            SalesmanDirectory directory, ExecutorService workers, Semaphore openFiles) {
+        long size = file.length();
+        long lastModified = file.lastModified();
+        if (entry != null && entry.matches(size, lastModified)) {
+            return entry;
+        }
+        MessageDigest digest = FileManager.newDigest("SHA-256");
+        FileContribution contribution = fileManager.readContribution(file, catalog, directory, options, workers,
+                openFiles, digest);
+        if (contribution == null) {
+            return null;
+        }
+        if (file.length() != size || file.lastModified() != lastModified) {
+            LOGGER.warning(file.getName() + " changed while it was read, it will be read again");
+            return null;
+        }
+        return new ManifestEntry(file.getPath(), size, lastModified, digest.digest(), contribution);
+    }
+
+    /**
+     * Loads the persisted manifest. A missing, unreadable or outdated state
+     * results in an empty manifest, which means a full rebuild.
+     *
+     * @param catalog   the current catalog of products
+     * @param directory the current directory of salesmen
+     * @return the manifest entries by path, in the order they were saved
+     */
+    private Map<String, ManifestEntry> loadState(ProductCatalog catalog, SalesmanDirectory directory) {
+        Map<String, ManifestEntry> entries = new LinkedHashMap<>();
+        if (!Files.exists(statePath)) {
+            return entries;
+        }
+        try (BinaryBlockReader in = new BinaryBlockReader(statePath)) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != fingerprint(catalog, directory)) {
+                LOGGER.info("The persisted state is outdated, every file will be processed");
+                return entries;
+            }
+            // Every file takes more than HASH_LENGTH bytes and every product PRODUCT_LENGTH bytes, which bounds the
+            // counts of a corrupted state
+            long stateSize = Files.size(statePath);
+            int entryCount = readCount(in, stateSize / HASH_LENGTH);
+            String[] paths = new String[entryCount];
+            for (int i = 0; i < entryCount; i++) {
+                paths[i] = in.readString();
+            }
+            long[] sizes = new long[entryCount];
+            long[] lastModified = new long[entryCount];
+            byte[] hashes = new byte[entryCount * HASH_LENGTH];
+            int[] salesmen = new int[entryCount];
+            int[] productCounts = new int[entryCount];
+            in.readLongs(sizes, 0, entryCount);
+            in.readLongs(lastModified, 0, entryCount);
+            in.readBytes(hashes, 0, hashes.length);
+            in.readInts(salesmen, 0, entryCount);
+            in.readInts(productCounts, 0, entryCount);
+            long lineCount = 0;
+            for (int i = 0; i < entryCount; i++) {
+                if (productCounts[i] < 0 || productCounts[i] > catalog.size()
+                        || salesmen[i] < (productCounts[i] > 0 ? 0 : -1) || salesmen[i] >= directory.size()) {
+                    throw new IOException("Corrupted state, invalid file " + paths[i]);
+                }
+                lineCount += productCounts[i];
+            }
+            int productCount = readCount(lineCount, stateSize / PRODUCT_LENGTH);
+            int[] products = new int[productCount];
+            long[] quantities = new long[productCount];
+            long[] lines = new long[productCount];
+            in.readInts(products, 0, productCount);
+            in.readLongs(quantities, 0, productCount);
+            in.readLongs(lines, 0, productCount);
+
+            for (int i = 0, product = 0; i < entryCount; i++) {
+                FileContribution contribution = new FileContribution();
+                for (int end = product + productCounts[i]; product < end; product++) {
+                    if (products[product] < 0 || products[product] >= catalog.size()) {
+                        throw new IOException("Corrupted state, invalid product ordinal " + products[product]);
+                    }
+                    contribution.add(salesmen[i], products[product], quantities[product], lines[product]);
+                }
+                byte[] contentHash = Arrays.copyOfRange(hashes, i * HASH_LENGTH, (i + 1) * HASH_LENGTH);
+                entries.put(paths[i], new ManifestEntry(paths[i], sizes[i], lastModified[i], contentHash,
+                        contribution));
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "The persisted state could not be read, every file will be processed: {0}",
+                    e.getMessage());
+            entries.clear();
+        }
+        return entries;
+    }
+
+    /**
+     * Reads a count and checks it is not larger than the given maximum.
+     */
+    private static int readCount(BinaryBlockReader in, long max) throws IOException {
+        return readCount(in.readInt(), max);
+    }
+
+    /**
+     * Checks a count is not negative nor larger than the given maximum.
+     */
+    private static int readCount(long count, long max) throws IOException {
+        if (count < 0 || count > max) {
+            throw new IOException("Corrupted state, invalid count " + count);
+        }
+        return (int) count;
+    }
+
+    /**
+     * Persists the manifest. It is written to a temporary file first and then
+     * moved over the previous state, so an interrupted run never leaves a broken
+     * state behind.
+     */
+    private void saveState(List<ManifestEntry> entries, ProductCatalog catalog, SalesmanDirectory directory) {
+        int entryCount = entries.size();
+        long[] sizes = new long[entryCount];
+        long[] lastModified = new long[entryCount];
+        byte[] hashes = new byte[entryCount * HASH_LENGTH];
+        int[] salesmen = new int[entryCount];
+        int[] productCounts = new int[entryCount];
+        int productCount = 0;
+        for (int i = 0; i < entryCount; i++) {
+            ManifestEntry entry = entries.get(i);
+            sizes[i] = entry.getSize();
+            lastModified[i] = entry.getLastModified();
+            System.arraycopy(entry.getContentHash(), 0, hashes, i * HASH_LENGTH, HASH_LENGTH);
+            salesmen[i] = entry.getContribution().getSalesmanOrdinal();
+            productCounts[i] = entry.getContribution().size();
+            productCount += productCounts[i];
+        }
+        int[] products = new int[productCount];
+        long[] quantities = new long[productCount];
+        long[] lines = new long[productCount];
+        int product = 0;
+        for (ManifestEntry entry : entries) {
+            FileContribution contribution = entry.getContribution();
+            for (int i = 0; i < contribution.size(); i++, product++) {
+                products[product] = contribution.getProductOrdinal(i);
+                quantities[product] = contribution.getQuantity(i);
+                lines[product] = contribution.getLines(i);
+            }
+        }
+
+        try {
+            Files.createDirectories(statePath.toAbsolutePath().getParent());
+            Path temporary = ReportFileWriter.createTemporaryFile(statePath);
+            try (BinaryBlockWriter out = new BinaryBlockWriter(temporary)) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(fingerprint(catalog, directory));
+                out.writeInt(entryCount);
+                for (ManifestEntry entry : entries) {
+                    out.writeString(entry.getPath());
+                }
+                out.writeLongs(sizes, 0, entryCount);
+                out.writeLongs(lastModified, 0, entryCount);
+                out.writeBytes(hashes, 0, hashes.length);
+                out.writeInts(salesmen, 0, entryCount);
+                out.writeInts(productCounts, 0, entryCount);
+                out.writeInts(products, 0, productCount);
+                out.writeLongs(quantities, 0, productCount);
+                out.writeLongs(lines, 0, productCount);
+            } catch (IOException e) {
+                Files.deleteIfExists(temporary);
+                throw e;
+            }
+            Files.move(temporary, statePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "The state could not be saved: {0}", e.getMessage());
+        }
+    }
+
+    /**
+     * Computes a fingerprint of the product IDs and salesman document numbers,
+     * in ordinal order. Prices are left out on purpose: revenues are recomputed
+     * from quantities on every run.
+     */
+    private long fingerprint(ProductCatalog catalog, SalesmanDirectory directory) {
+        long hash = catalog.idFingerprint();
+        for (int i = 0; i < directory.size(); i++) {
+            hash = (hash ^ directory.getDocumentNumber(i)) * 0x100000001B3L;
+        }
+        return hash ^ ((long) catalog.size() << 32 | directory.size());
+    }
+}
@@ -0,0 +1,123 @@
+package com.poli.service;
+
+/**
+ * The IngestionOptions class holds the settings of the parallel ingestion of
+ * the salesmen folder: how many workers read files, how many files may be
+ * open at the same time and the size of the byte ranges large files are split
+ * into.
+ */
+public class IngestionOptions {
+    private static final long MIN_RANGE_SIZE = 64 * 1024;
+
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private int maxOpenFiles = Runtime.getRuntime().availableProcessors();
+    private long rangeSize = 64L * 1024 * 1024;
+    private boolean cubeEnabled;
+
+    /**
+     * Returns the number of worker threads used to read files.
+     *
+     * @return the number of worker threads
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets the number of worker threads used to read files.
+     *
+     * @param parallelism the number of worker threads, at least 1
+     * @return the updated IngestionOptions object
+     */
+    public IngestionOptions setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("The parallelism must be at least 1");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Returns the maximum number of files open at the same time.
+     *
+     * @return the maximum number of open files
+     */
+    public int getMaxOpenFiles() {
+        return maxOpenFiles;
+    }
+
+    /**
+     * Sets the maximum number of files open at the same time.
+     *
+     * @param maxOpenFiles the maximum number of open files, at least 1
+     * @return the updated IngestionOptions object
+     */
+    public IngestionOptions setMaxOpenFiles(int maxOpenFiles) {
+        if (maxOpenFiles < 1) {
+            throw new IllegalArgumentException("The maximum number of open files must be at least 1");
+        }
+        this.maxOpenFiles = maxOpenFiles;
+        return this;
+    }
+
+    /**
+     * Returns the size of the byte ranges large files are split into.
+     *
+     * @return the size of a range in bytes
+     */
+    public long getRangeSize() {
+        return rangeSize;
+    }
+
+    /**
+     * Sets the size of the byte ranges large files are split into. A file of at
+     * least twice this size is parsed by several workers at the same time.
+     *
+     * @param rangeSize the size of a range in bytes, at least 64 KB
+     * @return the updated IngestionOptions object
+     */
+    public IngestionOptions setRangeSize(long rangeSize) {
+        if (rangeSize < MIN_RANGE_SIZE) {
+            throw new IllegalArgumentException("The range size must be at least " + MIN_RANGE_SIZE + " bytes");
+        }
+        this.rangeSize = rangeSize;
+        return this;
+    }
+
+    /**
+     * Checks if the ingestion builds a {@link SalesCube} of the sales.
+     *
+     * @return true if the cube is built, false otherwise
+     */
+    public boolean isCubeEnabled() {
+        return cubeEnabled;
+    }
+
+    /**
+     * Sets if the ingestion builds a {@link SalesCube} of the sales, returned with
+     * every aggregate. It is off by default, as it keeps every pair of salesman
+     * and product in memory.
+     *
+     * @param cubeEnabled true to build the cube
+     * @return the updated IngestionOptions object
+     */
+    public IngestionOptions setCubeEnabled(boolean cubeEnabled) {
+        this.cubeEnabled = cubeEnabled;
+        return this;
+    }
+
+    /**
+     * Returns a string representation of the IngestionOptions object.
+     *
+     * @return a string representation of the IngestionOptions object
+     */
+    @Override
+    public String toString() {
+        return "IngestionOptions{" +
+                "parallelism=" + parallelism +
+                ", maxOpenFiles=" + maxOpenFiles +
+                ", rangeSize=" + rangeSize +
+                ", cubeEnabled=" + cubeEnabled +
+                '}';
+    }
+}
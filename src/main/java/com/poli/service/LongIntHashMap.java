@@ -0,0 +1,164 @@
+package com.poli.service;
+
+/**
+ * The LongIntHashMap class is an open addressing hash map from primitive long
+ * keys to primitive int values. It avoids boxing keys and values, which makes
+ * lookups on document numbers and numeric ids allocation free.
+ */
+public class LongIntHashMap {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private final int missingValue;
+    private long[] keys;
+    private int[] values;
+    private boolean[] used;
+    private int size;
+    private int mask;
+
+    /**
+     * Creates an empty map.
+     *
+     * @param expectedSize the expected number of entries
+     * @param missingValue the value returned by {@link #get(long)} when a key is
+     *                     not present
+     */
+    public LongIntHashMap(int expectedSize, int missingValue) {
+        this.missingValue = missingValue;
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity * LOAD_FACTOR < expectedSize) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    /**
+     * Returns the value associated with a key.
+     *
+     * @param key the key to look up
+     * @return the value, or the missing value if the key is not present
+     */
+    public int get(long key) {
+        int slot = slot(key);
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return missingValue;
+    }
+
+    /**
+     * Checks if the map contains a key.
+     *
+     * @param key the key to look up
+     * @return true if the key is present, false otherwise
+     */
+    public boolean containsKey(long key) {
+        int slot = slot(key);
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Associates a value with a key, replacing any previous value.
+     *
+     * @param key   the key
+     * @param value the value
+     */
+    public void put(long key, int value) {
+        int slot = slot(key);
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        used[slot] = true;
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > keys.length * LOAD_FACTOR) {
+            rehash(keys.length << 1);
+        }
+    }
+
+    /**
+     * Associates a value with a key only if the key is not already present.
+     *
+     * @param key   the key
+     * @param value the value
+     * @return true if the value was stored, false if the key was already present
+     */
+    public boolean putIfAbsent(long key, int value) {
+        if (containsKey(key)) {
+            return false;
+        }
+        put(key, value);
+        return true;
+    }
+
+    /**
+     * Returns the number of entries in the map.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Computes the slot of a key by mixing its bits, so that sequential document
+     * numbers spread over the table.
+     */
+    private int slot(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    /**
+     * Allocates the arrays of the table with the given capacity.
+     */
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Moves every entry to a table with the given capacity.
+     */
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        boolean[] oldUsed = used;
+        allocate(capacity);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    /**
+     * Returns a string representation of the map.
+     *
+     * @return a string representation of the map
+     */
+    @Override
+    public String toString() {
+        return "LongIntHashMap{" +
+                "size=" + size +
+                ", capacity=" + keys.length +
+                ", missingValue=" + missingValue +
+                '}';
+    }
+}
@@ -0,0 +1,104 @@
+package com.poli.service;
+
+/**
+ * The ManifestEntry class records a salesmen file that has already been
+ * processed: its path, size, modification time and content hash, together with
+ * what it contributed to the aggregate.
+ */
+public class ManifestEntry {
+    private final String path;
+    private final long size;
+    private final long lastModified;
+    private final byte[] contentHash;
+    private final FileContribution contribution;
+
+    /**
+     * Creates a manifest entry.
+     *
+     * @param path         the path of the file
+     * @param size         the size of the file in bytes
+     * @param lastModified the modification time of the file in milliseconds
+     * @param contentHash  the SHA-256 hash of the content of the file, as read by
+     *                     {@link FileManager#readContribution}
+     * @param contribution what the file contributed to the aggregate
+     */
+    public ManifestEntry(String path, long size, long lastModified, byte[] contentHash,
+            FileContribution contribution) {
+        this.path = path;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.contentHash = contentHash;
+        this.contribution = contribution;
+    }
+
+    /**
+     * Returns the path of the file.
+     *
+     * @return the path of the file
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the size of the file in bytes.
+     *
+     * @return the size of the file
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the modification time of the file.
+     *
+     * @return the modification time in milliseconds
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Returns the SHA-256 hash of the content of the file, as read by
+     * {@link FileManager#readContribution}.
+     *
+     * @return the content hash
+     */
+    public byte[] getContentHash() {
+        return contentHash;
+    }
+
+    /**
+     * Returns what the file contributed to the aggregate.
+     *
+     * @return the contribution of the file
+     */
+    public FileContribution getContribution() {
+        return contribution;
+    }
+
+    /**
+     * Checks if the file still has the size and modification time recorded.
+     *
+     * @param size         the current size of the file
+     * @param lastModified the current modification time of the file
+     * @return true if neither changed, false otherwise
+     */
+    public boolean matches(long size, long lastModified) {
+        return this.size == size && this.lastModified == lastModified;
+    }
+
+    /**
+     * Returns a string representation of the ManifestEntry object.
+     *
+     * @return a string representation of the ManifestEntry object
+     */
+    @Override
+    public String toString() {
+        return "ManifestEntry{" +
+                "path='" + path + '\'' +
+                ", size=" + size +
+                ", lastModified=" + lastModified +
+                '}';
+    }
+}
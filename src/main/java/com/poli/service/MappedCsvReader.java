@@ -0,0 +1,629 @@
+package com.poli.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+
+/**
+ * The MappedCsvReader class reads semicolon separated files directly from the
+ * bytes of a memory mapped {@link FileChannel}. Lines are split into fields by
+ * recording byte offsets, and numbers are decoded in place, so reading a line
+ * does not create Strings, split arrays or substrings. Strings are only built
+ * when a text field is requested, with a fast path for ASCII content.
+ * <p>
+ * Fields follow the rules of {@code String.split(";")}: trailing empty fields
+ * are dropped and an empty line has a single empty field. Files larger than
+ * the mapping window are mapped in consecutive windows.
+ * <p>
+ * Compressed files, named {@code .gz} for gzip or {@code .deflate} and
+ * {@code .zz} for zlib deflate, cannot be mapped: they are decompressed by a
+ * {@link PipelinedInflater} on another thread and read through a window that
+ * is refilled from the decompressed bytes, with the same rules for lines and
+ * fields. No decompressed copy of the file is written to disk.
+ * <p>
+ * An uncompressed file can also be read by byte ranges, so several threads
+ * parse it at the same time. A line belongs to the range its first byte is in:
+ * a reader skips the end of the line its range starts in and reads the whole
+ * last line of its range, even past the end of the range.
+ * <p>
+ * A reader can also feed a {@link MessageDigest} with the bytes it reads, so
+ * the content of a file is hashed by the pass that parses it. The digest
+ * receives the bytes of the reader as they are consumed, up to the end of its
+ * range, in the order of the file.
+ */
+public class MappedCsvReader implements Closeable {
+    /** Result of a parse: the field is a valid number. */
+    public static final int VALID = 0;
+    /** Result of a parse: the field is empty or has characters that are not part of a number. */
+    public static final int NOT_A_NUMBER = 1;
+    /** Result of a parse: the field is a well formed number out of the range of its type. */
+    public static final int OUT_OF_RANGE = 2;
+
+    private static final int WINDOW_SIZE = 64 * 1024 * 1024;
+    private static final int MAP_THRESHOLD = 64 * 1024;
+    private static final int STREAM_WINDOW_SIZE = 1024 * 1024;
+    private static final int MAX_FIELDS = 16;
+    private static final byte SEPARATOR = ';';
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final InputStream input;
+    private boolean endOfInput;
+    private final long rangeEnd;
+    private final MessageDigest digest;
+    private long digestedTo;
+    private int windowCap = WINDOW_SIZE;
+    private ByteBuffer window;
+    private long windowStart;
+    private int position;
+    private final int[] fieldStarts = new int[MAX_FIELDS];
+    private final int[] fieldEnds = new int[MAX_FIELDS];
+    private int fieldCount;
+    private long lineNumber;
+    private byte[] scratch = new byte[256];
+    private long parsedLong;
+    private double parsedDouble;
+
+    /**
+     * Opens a file for reading.
+     *
+     * @param path the path of the file
+     * @throws IOException if the file cannot be opened
+     */
+    public MappedCsvReader(Path path) throws IOException {
+        this(path, null);
+    }
+
+    /**
+     * Opens a file for reading, feeding its bytes to a digest as they are read.
+     *
+     * @param path   the path of the file
+     * @param digest the digest of the bytes read, or null
+     * @throws IOException if the file cannot be opened
+     */
+    public MappedCsvReader(Path path, MessageDigest digest) throws IOException {
+        if (PipelinedInflater.isCompressed(path)) {
+            this.channel = null;
+            this.fileSize = -1;
+            this.input = new PipelinedInflater(path, PipelinedInflater.isGzip(path));
+            this.window = ByteBuffer.allocate(0);
+        } else {
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            this.fileSize = channel.size();
+            this.input = null;
+        }
+        this.rangeEnd = Long.MAX_VALUE;
+        this.digest = digest;
+        loadWindow(0);
+    }
+
+    /**
+     * Opens a range of an uncompressed file for reading. The reader returns the
+     * lines that start between the two offsets; line numbers count from the
+     * first of them.
+     *
+     * @param path  the path of the file
+     * @param start the offset of the first byte of the range
+     * @param end   the offset of the byte after the range
+     * @throws IOException              if the file cannot be opened
+     * @throws IllegalArgumentException if the file is compressed or the range is
+     *                                  not valid
+     */
+    public MappedCsvReader(Path path, long start, long end) throws IOException {
+        this(path, start, end, null);
+    }
+
+    /**
+     * Opens a range of an uncompressed file for reading, feeding the bytes of
+     * the range to a digest as they are read.
+     *
+     * @param path   the path of the file
+     * @param start  the offset of the first byte of the range
+     * @param end    the offset of the byte after the range
+     * @param digest the digest of the bytes of the range, or null
+     * @throws IOException              if the file cannot be opened
+     * @throws IllegalArgumentException if the file is compressed or the range is
+     *                                  not valid
+     */
+    public MappedCsvReader(Path path, long start, long end, MessageDigest digest) throws IOException {
+        if (PipelinedInflater.isCompressed(path)) {
+            throw new IllegalArgumentException("A compressed file cannot be read by ranges");
+        }
+        if (start < 0 || end < start) {
+            throw new IllegalArgumentException("Invalid range " + start + "-" + end);
+        }
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        this.input = null;
+        this.rangeEnd = end;
+        this.digest = digest;
+        this.digestedTo = start;
+        this.windowCap = (int) Math.min(WINDOW_SIZE, end - start + MAP_THRESHOLD);
+        if (start > 0 && start < fileSize && !followsLineFeed(start)) {
+            loadWindow(start);
+            // the line the range starts in belongs to the previous range
+            nextLine();
+            lineNumber = 0;
+        } else {
+            loadWindow(Math.min(start, fileSize));
+        }
+    }
+
+    /**
+     * Advances to the next line of the file.
+     *
+     * @return true if a line was read, false at the end of the file
+     * @throws IOException if the file cannot be read or a line does not fit in
+     *                     the mapping window
+     */
+    public boolean nextLine() throws IOException {
+        if (windowStart + position >= rangeEnd) {
+            return false;
+        }
+        while (position >= window.limit()) {
+            if (!hasMoreInput()) {
+                return false;
+            }
+            loadWindow(windowStart + position);
+        }
+        int end = findLineEnd(position);
+        while (end < 0 && hasMoreInput()) {
+            if (position == 0 && window.limit() >= WINDOW_SIZE) {
+                throw lineTooLong();
+            }
+            int scanned = window.limit() - position;
+            loadWindow(windowStart + position);
+            end = findLineEnd(scanned);
+        }
+        if (end < 0) {
+            end = window.limit();
+        }
+        int next = end < window.limit() ? end + 1 : end;
+        if (end > position && window.get(end - 1) == '\r') {
+            end--;
+        }
+        splitFields(position, end);
+        position = next;
+        lineNumber++;
+        return true;
+    }
+
+    /**
+     * Returns the number of fields of the current line. Only the first 16 fields
+     * of a line can be decoded.
+     *
+     * @return the number of fields
+     */
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Returns the number of the current line, starting at 1.
+     *
+     * @return the line number
+     */
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Returns the offset in the file of the byte after the current line, which
+     * is where the next line starts.
+     *
+     * @return the offset of the next line
+     */
+    public long getOffset() {
+        return windowStart + position;
+    }
+
+    /**
+     * Returns the length in bytes of a field of the current line.
+     *
+     * @param field the index of the field
+     * @return the length of the field
+     */
+    public int getFieldLength(int field) {
+        return fieldEnds[field] - fieldStarts[field];
+    }
+
+    /**
+     * Decodes a field of the current line as a long, with the same rules as
+     * {@link Long#parseLong(String)}.
+     *
+     * @param field the index of the field
+     * @return the value of the field
+     * @throws NumberFormatException if the field is not a valid long
+     */
+    public long getLong(int field) {
+        if (parseLong(field) != VALID) {
+            throw invalidNumber(field);
+        }
+        return parsedLong;
+    }
+
+    /**
+     * Decodes a field of the current line as an int, with the same rules as
+     * {@link Integer#parseInt(String)}.
+     *
+     * @param field the index of the field
+     * @return the value of the field
+     * @throws NumberFormatException if the field is not a valid int
+     */
+    public int getInt(int field) {
+        if (parseInt(field) != VALID) {
+            throw invalidNumber(field);
+        }
+        return (int) parsedLong;
+    }
+
+    /**
+     * Decodes a field of the current line as a long without throwing, with the
+     * same rules as {@link Long#parseLong(String)}. On success the value is
+     * returned by {@link #getParsedLong()}.
+     *
+     * @param field the index of the field
+     * @return {@link #VALID}, {@link #NOT_A_NUMBER} or {@link #OUT_OF_RANGE}
+     */
+    public int parseLong(int field) {
+        int start = fieldStarts[field];
+        int end = fieldEnds[field];
+        if (start == end) {
+            return NOT_A_NUMBER;
+        }
+        boolean negative = false;
+        byte first = window.get(start);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            if (++start == end) {
+                return NOT_A_NUMBER;
+            }
+        }
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long value = 0;
+        boolean overflow = false;
+        for (int i = start; i < end; i++) {
+            int digit = window.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return NOT_A_NUMBER;
+            }
+            if (value < limit / 10 || value * 10 < limit + digit) {
+                overflow = true;
+            } else {
+                value = value * 10 - digit;
+            }
+        }
+        if (overflow) {
+            return OUT_OF_RANGE;
+        }
+        parsedLong = negative ? value : -value;
+        return VALID;
+    }
+
+    /**
+     * Decodes a field of the current line as an int without throwing, with the
+     * same rules as {@link Integer#parseInt(String)}. On success the value is
+     * returned by {@link #getParsedLong()}.
+     *
+     * @param field the index of the field
+     * @return {@link #VALID}, {@link #NOT_A_NUMBER} or {@link #OUT_OF_RANGE}
+     */
+    public int parseInt(int field) {
+        int result = parseLong(field);
+        if (result == VALID && (parsedLong < Integer.MIN_VALUE || parsedLong > Integer.MAX_VALUE)) {
+            return OUT_OF_RANGE;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the value decoded by the last successful {@link #parseLong(int)}
+     * or {@link #parseInt(int)}.
+     *
+     * @return the decoded value
+     */
+    public long getParsedLong() {
+        return parsedLong;
+    }
+
+    /**
+     * Decodes a field of the current line as a non negative long written in
+     * canonical form, that is, only digits and no leading zeros. It never throws,
+     * which makes it suitable to probe numeric ids.
+     *
+     * @param field the index of the field
+     * @return the value of the field, or -1 if the field is not a canonical
+     *         number
+     */
+    public long getCanonicalLong(int field) {
+        int start = fieldStarts[field];
+        int end = fieldEnds[field];
+        int length = end - start;
+        if (length == 0 || length > 18 || (length > 1 && window.get(start) == '0')) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = window.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Decodes a field of the current line as a double, with the same rules as
+     * {@link Double#parseDouble(String)}. Plain decimals with up to 15
+     * significant digits are decoded in place and correctly rounded; any other
+     * form falls back to the JDK parser.
+     *
+     * @param field the index of the field
+     * @return the value of the field
+     * @throws NumberFormatException if the field is not a valid double
+     */
+    public double getDouble(int field) {
+        int start = fieldStarts[field];
+        int end = fieldEnds[field];
+        int i = start;
+        boolean negative = false;
+        if (i < end && (window.get(i) == '-' || window.get(i) == '+')) {
+            negative = window.get(i) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean dot = false;
+        for (; i < end; i++) {
+            byte b = window.get(i);
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (mantissa > MAX_EXACT_MANTISSA) {
+                    return Double.parseDouble(getString(field));
+                }
+                if (dot) {
+                    fractionDigits++;
+                }
+            } else if (b == '.' && !dot) {
+                dot = true;
+            } else {
+                return Double.parseDouble(getString(field));
+            }
+        }
+        if (digits == 0 || fractionDigits >= POWERS_OF_TEN.length) {
+            return Double.parseDouble(getString(field));
+        }
+        double value = mantissa / POWERS_OF_TEN[fractionDigits];
+        return negative ? -value : value;
+    }
+
+    /**
+     * Decodes a field of the current line as a finite double without throwing.
+     * Fields made only of digits, signs, a dot and exponents are decoded with
+     * the rules of {@link #getDouble(int)}; anything else, including {@code NaN}
+     * and {@code Infinity}, is not a number. On success the value is returned
+     * by {@link #getParsedDouble()}.
+     *
+     * @param field the index of the field
+     * @return {@link #VALID}, {@link #NOT_A_NUMBER} or {@link #OUT_OF_RANGE}
+     */
+    public int parseDouble(int field) {
+        int start = fieldStarts[field];
+        int end = fieldEnds[field];
+        boolean digits = false;
+        for (int i = start; i < end; i++) {
+            byte b = window.get(i);
+            if (b >= '0' && b <= '9') {
+                digits = true;
+            } else if (b != '.' && b != '-' && b != '+' && b != 'e' && b != 'E') {
+                return NOT_A_NUMBER;
+            }
+        }
+        if (!digits) {
+            return NOT_A_NUMBER;
+        }
+        try {
+            parsedDouble = getDouble(field);
+        } catch (NumberFormatException e) {
+            // only reached by misplaced signs, dots or exponents
+            return NOT_A_NUMBER;
+        }
+        return Double.isInfinite(parsedDouble) ? OUT_OF_RANGE : VALID;
+    }
+
+    /**
+     * Returns the value decoded by the last successful
+     * {@link #parseDouble(int)}.
+     *
+     * @return the decoded value
+     */
+    public double getParsedDouble() {
+        return parsedDouble;
+    }
+
+    /**
+     * Decodes a field of the current line as a String. ASCII content is copied
+     * byte by byte; anything else is decoded as UTF-8.
+     *
+     * @param field the index of the field
+     * @return the value of the field
+     */
+    public String getString(int field) {
+        int start = fieldStarts[field];
+        int length = fieldEnds[field] - start;
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        boolean ascii = true;
+        for (int i = 0; i < length; i++) {
+            byte b = window.get(start + i);
+            scratch[i] = b;
+            ascii &= b >= 0;
+        }
+        return new String(scratch, 0, length, ascii ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Closes the underlying channel, or stops the decompression of a compressed
+     * file. The digest, if any, receives the bytes consumed so far.
+     *
+     * @throws IOException if the channel cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        digestConsumed();
+        if (input != null) {
+            input.close();
+        } else {
+            channel.close();
+        }
+    }
+
+    /**
+     * Checks if the byte before an offset of the file is a line feed.
+     */
+    private boolean followsLineFeed(long offset) throws IOException {
+        ByteBuffer previous = ByteBuffer.allocate(1);
+        return channel.read(previous, offset - 1) == 1 && previous.get(0) == '\n';
+    }
+
+    /**
+     * Checks if there are bytes of the file after the current window.
+     */
+    private boolean hasMoreInput() {
+        return input != null ? !endOfInput : windowStart + window.limit() < fileSize;
+    }
+
+    /**
+     * Maps, or reads for small files, the window of the file starting at the
+     * given offset. The window of a range only covers the range, and doubles
+     * when a line does not fit in it. For a compressed file the unread bytes of
+     * the window are moved to its beginning and the rest is filled with
+     * decompressed bytes.
+     */
+    private void loadWindow(long start) throws IOException {
+        digestConsumed();
+        if (input != null) {
+            refillWindow(start);
+            return;
+        }
+        if (window != null && start == windowStart && window.limit() == windowCap) {
+            windowCap = (int) Math.min(WINDOW_SIZE, 2L * windowCap);
+        }
+        int size = (int) Math.min(windowCap, fileSize - start);
+        if (fileSize < MAP_THRESHOLD) {
+            window = ByteBuffer.allocate(size);
+            while (window.hasRemaining() && channel.read(window, start + window.position()) >= 0) {
+                // keep reading until the window is full
+            }
+            window.flip();
+        } else {
+            window = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+        }
+        windowStart = start;
+        position = 0;
+    }
+
+    /**
+     * Refills the window of a compressed file from the given offset, doubling it
+     * when a line does not fit. It takes whatever the inflating thread has ready
+     * instead of waiting for the window to be full, so parsing starts as soon as
+     * the first bytes are decompressed.
+     */
+    private void refillWindow(long start) throws IOException {
+        digestConsumed();
+        int kept = window.limit() - position;
+        byte[] bytes = window.array();
+        if (kept == bytes.length) {
+            bytes = new byte[Math.min(Math.max(bytes.length * 2, STREAM_WINDOW_SIZE), WINDOW_SIZE)];
+        }
+        System.arraycopy(window.array(), position, bytes, 0, kept);
+        int read = input.read(bytes, kept, bytes.length - kept);
+        endOfInput = read < 0;
+        window = ByteBuffer.wrap(bytes, 0, kept + Math.max(read, 0));
+        windowStart = start;
+        position = 0;
+    }
+
+    /**
+     * Feeds the digest with the bytes of the window consumed since it was last
+     * fed, without going past the end of the range. Called before the window is
+     * replaced, so every byte is digested once even when a window is reloaded
+     * from the same offset.
+     */
+    private void digestConsumed() {
+        if (digest == null || window == null) {
+            return;
+        }
+        long from = Math.max(digestedTo, windowStart);
+        long to = Math.min(windowStart + position, rangeEnd);
+        if (to > from) {
+            ByteBuffer consumed = window.duplicate();
+            consumed.limit((int) (to - windowStart)).position((int) (from - windowStart));
+            digest.update(consumed);
+            digestedTo = to;
+        }
+    }
+
+    /**
+     * Finds the next line feed of the window from the given position.
+     */
+    private int findLineEnd(int from) {
+        int limit = window.limit();
+        for (int i = from; i < limit; i++) {
+            if (window.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Records the offsets of the fields of the line between start and end.
+     */
+    private void splitFields(int start, int end) {
+        int fields = 0;
+        int lastNonEmpty = -1;
+        int fieldStart = start;
+        for (int i = start; i <= end; i++) {
+            if (i == end || window.get(i) == SEPARATOR) {
+                if (fields < MAX_FIELDS) {
+                    fieldStarts[fields] = fieldStart;
+                    fieldEnds[fields] = i;
+                }
+                if (i > fieldStart) {
+                    lastNonEmpty = fields;
+                }
+                fields++;
+                fieldStart = i + 1;
+            }
+        }
+        fieldCount = start == end ? 1 : lastNonEmpty + 1;
+    }
+
+    /**
+     * Builds the exception thrown for a line that does not fit in the window.
+     */
+    private IOException lineTooLong() {
+        return new IOException("Line " + (lineNumber + 1) + " is longer than " + WINDOW_SIZE + " bytes");
+    }
+
+    /**
+     * Builds the exception thrown for a field that is not a valid number.
+     */
+    private NumberFormatException invalidNumber(int field) {
+        return new NumberFormatException("For input string: \"" + getString(field) + "\"");
+    }
+}
@@ -0,0 +1,100 @@
+package com.poli.service;
+
+/**
+ * The Money class holds the helpers of the fixed point money path. Amounts are
+ * kept as a primitive long number of cents, so totals of millions of lines add
+ * up exactly, and every operation fails with an {@link ArithmeticException}
+ * instead of silently overflowing. Amounts are only turned into text when a
+ * report is written.
+ */
+public final class Money {
+    private static final double MAX_CENTS = 0x1p63;
+
+    /**
+     * Prevents the creation of instances.
+     */
+    private Money() {
+    }
+
+    /**
+     * Converts a price to cents, rounding half up to the nearest cent.
+     *
+     * @param amount the price in currency units
+     * @return the price in cents
+     * @throws ArithmeticException if the price is not a finite number or does not
+     *                             fit in a long number of cents
+     */
+    public static long toCents(double amount) {
+        if (!fitsInCents(amount)) {
+            throw new ArithmeticException("The amount " + amount + " does not fit in cents");
+        }
+        return Math.round(amount * 100.0);
+    }
+
+    /**
+     * Checks if a price can be converted to cents.
+     *
+     * @param amount the price in currency units
+     * @return true if the price is a finite number that fits in a long number of
+     *         cents
+     */
+    public static boolean fitsInCents(double amount) {
+        double cents = amount * 100.0;
+        return !Double.isNaN(cents) && cents < MAX_CENTS && cents >= -MAX_CENTS;
+    }
+
+    /**
+     * Multiplies an amount in cents by a quantity.
+     *
+     * @param cents    the amount in cents
+     * @param quantity the quantity
+     * @return the product in cents
+     * @throws ArithmeticException if the result overflows
+     */
+    public static long multiply(long cents, long quantity) {
+        return Math.multiplyExact(cents, quantity);
+    }
+
+    /**
+     * Adds two amounts in cents.
+     *
+     * @param cents the first amount in cents
+     * @param other the second amount in cents
+     * @return the sum in cents
+     * @throws ArithmeticException if the result overflows
+     */
+    public static long add(long cents, long other) {
+        return Math.addExact(cents, other);
+    }
+
+    /**
+     * Formats an amount in cents with two decimals, for example 1234.50.
+     *
+     * @param cents the amount in cents
+     * @return the formatted amount
+     */
+    public static String format(long cents) {
+        StringBuilder text = new StringBuilder(24);
+        if (cents < 0) {
+            text.append('-');
+        }
+        long units = Math.abs(cents / 100);
+        int fraction = (int) Math.abs(cents % 100);
+        text.append(units).append('.');
+        if (fraction < 10) {
+            text.append('0');
+        }
+        return text.append(fraction).toString();
+    }
+
+    /**
+     * Returns the whole currency units of an amount in cents, truncating the
+     * cents as the salesmen report always did.
+     *
+     * @param cents the amount in cents
+     * @return the whole units of the amount
+     */
+    public static long toUnits(long cents) {
+        return cents / 100;
+    }
+}
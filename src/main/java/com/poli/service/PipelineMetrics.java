@@ -0,0 +1,278 @@
+package com.poli.service;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * The PipelineMetrics class counts and times the work of the pipeline so it
+ * can be scraped over JMX during long runs: files, lines and bytes read, lines
+ * rejected by reason, the time spent in every {@link PipelineStage} and the
+ * throughput of the current ingest.
+ * <p>
+ * There is one instance per process, registered in the platform MBean server
+ * the first time it is used. Counters are {@link LongAdder}s and the readers
+ * add their counts once per file, so recording costs almost nothing on the
+ * parsing threads.
+ */
+public final class PipelineMetrics implements PipelineMetricsMXBean {
+    /** The name the metrics are registered with in the platform MBean server. */
+    public static final String OBJECT_NAME = "com.poli:type=PipelineMetrics";
+
+    private static final Logger LOGGER = Logger.getLogger(PipelineMetrics.class.getName());
+    private static final PipelineMetrics INSTANCE = register(new PipelineMetrics());
+
+    private final LongAdder filesProcessed = new LongAdder();
+    private final LongAdder linesParsed = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder[] linesRejected = new LongAdder[RejectReason.values().length];
+    private final AtomicLongArray stageNanos = new AtomicLongArray(PipelineStage.values().length);
+    private final AtomicLongArray lastStageNanos = new AtomicLongArray(PipelineStage.values().length);
+    private volatile boolean ingestRunning;
+    private volatile long ingestStartNanos;
+    private volatile long ingestStartLines;
+    private volatile long ingestStartBytes;
+    private volatile long ingestEndNanos;
+    private volatile long ingestEndLines;
+    private volatile long ingestEndBytes;
+
+    /**
+     * Creates the metrics with every counter at zero.
+     */
+    private PipelineMetrics() {
+        for (int i = 0; i < linesRejected.length; i++) {
+            linesRejected[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Returns the metrics of the process.
+     *
+     * @return the metrics
+     */
+    public static PipelineMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Registers the metrics in the platform MBean server. A failure is logged and
+     * the metrics are still recorded.
+     */
+    private static PipelineMetrics register(PipelineMetrics metrics) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, new ObjectName(OBJECT_NAME));
+        } catch (JMException | SecurityException e) {
+            LOGGER.log(Level.WARNING, "The pipeline metrics could not be registered: {0}", e.getMessage());
+        }
+        return metrics;
+    }
+
+    /**
+     * Records that a sales file was read.
+     *
+     * @param bytes the size of the file
+     * @param lines the number of lines of the file
+     */
+    public void fileRead(long bytes, long lines) {
+        filesProcessed.increment();
+        bytesRead.add(bytes);
+        linesParsed.add(lines);
+    }
+
+    /**
+     * Records lines left out of the totals.
+     *
+     * @param reason why the lines were rejected
+     * @param lines  the number of lines
+     */
+    public void linesRejected(RejectReason reason, long lines) {
+        if (lines > 0) {
+            linesRejected[reason.ordinal()].add(lines);
+        }
+    }
+
+    /**
+     * Records the start of a stage.
+     *
+     * @param stage the stage starting
+     * @return the start time to pass to {@link #endStage}
+     */
+    public long startStage(PipelineStage stage) {
+        long now = System.nanoTime();
+        if (stage == PipelineStage.INGEST) {
+            ingestStartLines = linesParsed.sum();
+            ingestStartBytes = bytesRead.sum();
+            ingestStartNanos = now;
+            ingestRunning = true;
+        }
+        return now;
+    }
+
+    /**
+     * Records the end of a stage.
+     *
+     * @param stage      the stage ending
+     * @param startNanos the time returned by {@link #startStage}
+     */
+    public void endStage(PipelineStage stage, long startNanos) {
+        long now = System.nanoTime();
+        stageNanos.addAndGet(stage.ordinal(), now - startNanos);
+        lastStageNanos.set(stage.ordinal(), now - startNanos);
+        if (stage == PipelineStage.INGEST) {
+            ingestEndLines = linesParsed.sum();
+            ingestEndBytes = bytesRead.sum();
+            ingestEndNanos = now;
+            ingestRunning = false;
+        }
+    }
+
+    /**
+     * Returns the number of sales files read.
+     *
+     * @return the number of files processed
+     */
+    @Override
+    public long getFilesProcessed() {
+        return filesProcessed.sum();
+    }
+
+    /**
+     * Returns the number of lines read from the sales files, headers included.
+     *
+     * @return the number of lines parsed
+     */
+    @Override
+    public long getLinesParsed() {
+        return linesParsed.sum();
+    }
+
+    /**
+     * Returns the number of lines left out of the totals.
+     *
+     * @return the number of lines rejected
+     */
+    @Override
+    public long getLinesRejected() {
+        long total = 0;
+        for (LongAdder rejected : linesRejected) {
+            total += rejected.sum();
+        }
+        return total;
+    }
+
+    /**
+     * Returns the number of lines left out of the totals by reason.
+     *
+     * @return the number of lines rejected, by reason
+     */
+    @Override
+    public Map<String, Long> getLinesRejectedByReason() {
+        Map<String, Long> byReason = new LinkedHashMap<>();
+        for (RejectReason reason : RejectReason.values()) {
+            byReason.put(reason.name(), linesRejected[reason.ordinal()].sum());
+        }
+        return byReason;
+    }
+
+    /**
+     * Returns the number of bytes of the sales files read.
+     *
+     * @return the number of bytes read
+     */
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    /**
+     * Returns the time spent in every stage since the process started.
+     *
+     * @return the milliseconds, by stage
+     */
+    @Override
+    public Map<String, Long> getStageMillis() {
+        return toMillis(stageNanos);
+    }
+
+    /**
+     * Returns the duration of the last run of every stage.
+     *
+     * @return the milliseconds, by stage
+     */
+    @Override
+    public Map<String, Long> getLastStageMillis() {
+        return toMillis(lastStageNanos);
+    }
+
+    /**
+     * Returns the lines parsed per second by the running or last ingest.
+     *
+     * @return the current throughput in lines per second
+     */
+    @Override
+    public double getCurrentLinesPerSecond() {
+        return ingestRate(linesParsed.sum(), ingestStartLines, ingestEndLines);
+    }
+
+    /**
+     * Returns the bytes read per second by the running or last ingest.
+     *
+     * @return the current throughput in bytes per second
+     */
+    @Override
+    public double getCurrentBytesPerSecond() {
+        return ingestRate(bytesRead.sum(), ingestStartBytes, ingestEndBytes);
+    }
+
+    /**
+     * Sets every counter and timer back to zero.
+     */
+    @Override
+    public void reset() {
+        filesProcessed.reset();
+        linesParsed.reset();
+        bytesRead.reset();
+        for (LongAdder rejected : linesRejected) {
+            rejected.reset();
+        }
+        for (int i = 0; i < stageNanos.length(); i++) {
+            stageNanos.set(i, 0);
+            lastStageNanos.set(i, 0);
+        }
+        ingestStartLines = 0;
+        ingestStartBytes = 0;
+        ingestEndLines = 0;
+        ingestEndBytes = 0;
+        ingestStartNanos = 0;
+        ingestEndNanos = 0;
+    }
+
+    /**
+     * Computes the rate of a counter over the running ingest, or over the last
+     * one if it already ended.
+     */
+    private double ingestRate(long current, long atStart, long atEnd) {
+        boolean running = ingestRunning;
+        long elapsed = (running ? System.nanoTime() : ingestEndNanos) - ingestStartNanos;
+        long count = (running ? current : atEnd) - atStart;
+        return elapsed <= 0 ? 0 : count * 1e9 / elapsed;
+    }
+
+    /**
+     * Converts the nanoseconds of every stage to milliseconds by stage name.
+     */
+    private static Map<String, Long> toMillis(AtomicLongArray nanos) {
+        Map<String, Long> millis = new LinkedHashMap<>();
+        for (PipelineStage stage : PipelineStage.values()) {
+            millis.put(stage.name(), nanos.get(stage.ordinal()) / 1_000_000);
+        }
+        return millis;
+    }
+}
@@ -0,0 +1,82 @@
+package com.poli.service;
+
+import java.util.Map;
+
+/**
+ * The PipelineMetricsMXBean interface is the management interface of
+ * {@link PipelineMetrics}, registered in the platform MBean server as
+ * {@value PipelineMetrics#OBJECT_NAME}. Counters start at zero when the
+ * process starts and only grow until {@link #reset()} is called.
+ */
+public interface PipelineMetricsMXBean {
+
+    /**
+     * Returns the number of sales files read.
+     *
+     * @return the number of files processed
+     */
+    long getFilesProcessed();
+
+    /**
+     * Returns the number of lines read from the sales files, headers included.
+     *
+     * @return the number of lines parsed
+     */
+    long getLinesParsed();
+
+    /**
+     * Returns the number of lines left out of the totals.
+     *
+     * @return the number of lines rejected
+     */
+    long getLinesRejected();
+
+    /**
+     * Returns the number of lines left out of the totals by reason.
+     *
+     * @return the number of lines rejected, by name of {@link RejectReason}
+     */
+    Map<String, Long> getLinesRejectedByReason();
+
+    /**
+     * Returns the number of bytes of the sales files read.
+     *
+     * @return the number of bytes read
+     */
+    long getBytesRead();
+
+    /**
+     * Returns the time spent in every stage since the process started.
+     *
+     * @return the milliseconds, by name of {@link PipelineStage}
+     */
+    Map<String, Long> getStageMillis();
+
+    /**
+     * Returns the duration of the last run of every stage.
+     *
+     * @return the milliseconds, by name of {@link PipelineStage}
+     */
+    Map<String, Long> getLastStageMillis();
+
+    /**
+     * Returns the lines parsed per second by the ingest stage running now, or by
+     * the last one if none is running.
+     *
+     * @return the current throughput in lines per second
+     */
+    double getCurrentLinesPerSecond();
+
+    /**
+     * Returns the bytes read per second by the ingest stage running now, or by
+     * the last one if none is running.
+     *
+     * @return the current throughput in bytes per second
+     */
+    double getCurrentBytesPerSecond();
+
+    /**
+     * Sets every counter and timer back to zero.
+     */
+    void reset();
+}
@@ -0,0 +1,18 @@
+package com.poli.service;
+
+/**
+ * The PipelineStage enum lists the stages of the pipeline timed by
+ * {@link PipelineMetrics}.
+ */
+public enum PipelineStage {
+    /** Reading the products and salesmen files and indexing them. */
+    CATALOG_LOAD,
+    /** Reading and parsing the sales files. */
+    INGEST,
+    /** Adding the lines of the sales files to the running totals. */
+    AGGREGATE,
+    /** Ordering the salesmen and products of the reports. */
+    SORT,
+    /** Writing the reports. */
+    WRITE
+}
@@ -0,0 +1,219 @@
+package com.poli.service;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * The PipelinedInflater class decompresses a gzip or zlib deflate file on a
+ * thread of its own and hands the decompressed bytes to the reader in chunks,
+ * so inflating the next chunk overlaps with parsing the current one. At most a
+ * few chunks wait between the two threads, which keeps the memory used by a
+ * file bounded whatever its size.
+ */
+class PipelinedInflater extends InputStream {
+    private static final int FIRST_CHUNK_SIZE = 8 * 1024;
+    private static final int CHUNK_SIZE = 256 * 1024;
+    private static final int QUEUED_CHUNKS = 4;
+    private static final int FILE_BUFFER_SIZE = 64 * 1024;
+    private static final byte[] END_OF_INPUT = new byte[0];
+    private static final ExecutorService INFLATERS = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "sales-inflater");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Path path;
+    private final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<>(QUEUED_CHUNKS);
+    private volatile IOException failure;
+    private volatile boolean closed;
+    private byte[] chunk = new byte[0];
+    private int chunkPosition;
+
+    /**
+     * Starts decompressing a file.
+     *
+     * @param path the path of the file
+     * @param gzip true for the gzip format, false for the zlib deflate format
+     * @throws IOException if the file cannot be opened
+     */
+    PipelinedInflater(Path path, boolean gzip) throws IOException {
+        this.path = path;
+        InputStream file = new BufferedInputStream(Files.newInputStream(path), FILE_BUFFER_SIZE);
+        INFLATERS.execute(() -> inflate(file, gzip));
+    }
+
+    /**
+     * Checks if a file is compressed, by its extension: {@code .gz} for gzip,
+     * {@code .deflate} or {@code .zz} for zlib deflate.
+     *
+     * @param path the path of the file
+     * @return true if the file must be read through a PipelinedInflater
+     */
+    static boolean isCompressed(Path path) {
+        return isGzip(path) || isDeflate(path);
+    }
+
+    /**
+     * Checks if a file is in the gzip format, by its extension.
+     *
+     * @param path the path of the file
+     * @return true if the name of the file ends with {@code .gz}
+     */
+    static boolean isGzip(Path path) {
+        return path.getFileName().toString().endsWith(".gz");
+    }
+
+    /**
+     * Checks if a file is in the zlib deflate format, by its extension.
+     *
+     * @param path the path of the file
+     * @return true if the name of the file ends with {@code .deflate} or
+     *         {@code .zz}
+     */
+    private static boolean isDeflate(Path path) {
+        String name = path.getFileName().toString();
+        return name.endsWith(".deflate") || name.endsWith(".zz");
+    }
+
+    /**
+     * Reads a byte of the decompressed content.
+     *
+     * @return the byte, or -1 at the end of the content
+     * @throws IOException if the file is not valid or cannot be read
+     */
+    @Override
+    public int read() throws IOException {
+        if (!nextChunk()) {
+            return -1;
+        }
+        return chunk[chunkPosition++] & 0xFF;
+    }
+
+    /**
+     * Reads decompressed bytes into an array, waiting for the inflating thread
+     * only when no decompressed bytes are left.
+     *
+     * @param bytes  the array to fill
+     * @param offset the position of the first byte in the array
+     * @param length the maximum number of bytes to read
+     * @return the number of bytes read, or -1 at the end of the content
+     * @throws IOException if the file is not valid or cannot be read
+     */
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!nextChunk()) {
+            return -1;
+        }
+        int count = Math.min(length, chunk.length - chunkPosition);
+        System.arraycopy(chunk, chunkPosition, bytes, offset, count);
+        chunkPosition += count;
+        return count;
+    }
+
+    /**
+     * Stops the inflating thread and releases the chunks waiting for the reader.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        chunks.clear();
+        chunk = END_OF_INPUT;
+        chunkPosition = 0;
+    }
+
+    /**
+     * Makes sure the current chunk has bytes left, taking the next one from the
+     * inflating thread when it is exhausted.
+     *
+     * @return false at the end of the content
+     */
+    private boolean nextChunk() throws IOException {
+        while (chunkPosition == chunk.length) {
+            if (chunk == END_OF_INPUT) {
+                if (failure != null && !closed) {
+                    throw failure;
+                }
+                return false;
+            }
+            try {
+                chunk = chunks.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("The decompression of " + path.getFileName() + " was interrupted");
+            }
+            chunkPosition = 0;
+        }
+        return true;
+    }
+
+    /**
+     * Decompresses the file into chunks until its end, the reader closes the
+     * stream or an error occurs, then queues the end of the input. Chunks start
+     * small and double up to their maximum size, so a file of a few lines does
+     * not allocate a full chunk. Any error, not only an IOException, is
+     * recorded as the failure of the stream and the end of the input is queued
+     * whatever happens, so the reader never waits for a thread that stopped.
+     */
+    private void inflate(InputStream file, boolean gzip) {
+        try (InputStream source = file;
+                InputStream input = gzip ? new GZIPInputStream(source, FILE_BUFFER_SIZE)
+                        : new InflaterInputStream(source)) {
+            int chunkSize = FIRST_CHUNK_SIZE;
+            while (!closed) {
+                byte[] next = new byte[chunkSize];
+                int count = input.readNBytes(next, 0, chunkSize);
+                if (count == 0) {
+                    break;
+                }
+                chunks.put(count < chunkSize ? Arrays.copyOf(next, count) : next);
+                chunkSize = Math.min(chunkSize * 2, CHUNK_SIZE);
+            }
+        } catch (IOException e) {
+            failure = e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure = new InterruptedIOException("The decompression of " + path.getFileName() + " was interrupted");
+        } catch (Throwable e) {
+            failure = new IOException("The decompression of " + path.getFileName() + " failed", e);
+        } finally {
+            if (!closed) {
+                // A close clears the queue, so this never waits for a reader that is gone
+                queueEndOfInput();
+            }
+        }
+    }
+
+    /**
+     * Queues the end of the input even if the inflating thread is interrupted,
+     * restoring the interrupt afterwards, since the reader waits for it.
+     */
+    private void queueEndOfInput() {
+        boolean interrupted = Thread.interrupted();
+        boolean queued = false;
+        while (!queued) {
+            try {
+                chunks.put(END_OF_INPUT);
+                queued = true;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
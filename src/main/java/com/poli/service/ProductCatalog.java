@@ -0,0 +1,257 @@
+package com.poli.service;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.poli.pojo.Product;
+
+/**
+ * The ProductCatalog class holds the available products indexed by their ID.
+ * Every product gets a dense ordinal, its position in the catalog, so lookups
+ * done once per sales line cost a single hash probe instead of a scan of the
+ * whole list of products. Unit prices are converted to cents once, when the
+ * catalog is loaded, for the fixed point money path.
+ * <p>
+ * A catalog can also be backed by a memory-mapped {@link CatalogIndex}. Lookups
+ * and prices are then read from the mapping, and products are only built when
+ * they are asked for, so opening a catalog of millions of products takes
+ * almost no time or heap.
+ */
+public class ProductCatalog {
+    private final List<Product> products;
+    private final Map<String, Integer> ordinalsById;
+    private final LongIntHashMap ordinalsByNumericId;
+    private final long[] unitPriceCents;
+    private final CatalogIndex index;
+
+    /**
+     * Creates a catalog from a list of products. When two products share the
+     * same ID the first one wins, as it did with the linear lookups.
+     *
+     * @param products the list of available products
+     */
+    public ProductCatalog(List<Product> products) {
+        this.products = new ArrayList<>(products.size());
+        this.ordinalsById = new HashMap<>(Math.max(16, products.size() * 2));
+        this.ordinalsByNumericId = new LongIntHashMap(products.size(), -1);
+        for (Product product : products) {
+            if (product != null && ordinalsById.putIfAbsent(product.getProductId(), this.products.size()) == null) {
+                long numericId = toCanonicalNumber(product.getProductId());
+                if (numericId >= 0) {
+                    ordinalsByNumericId.put(numericId, this.products.size());
+                }
+                this.products.add(product);
+            }
+        }
+        this.unitPriceCents = new long[this.products.size()];
+        for (int i = 0; i < unitPriceCents.length; i++) {
+            unitPriceCents[i] = Money.toCents(this.products.get(i).getUnitPrice());
+        }
+        this.index = null;
+    }
+
+    /**
+     * Creates a catalog backed by the index of a products file.
+     *
+     * @param index the mapped index
+     */
+    ProductCatalog(CatalogIndex index) {
+        this.products = null;
+        this.ordinalsById = null;
+        this.ordinalsByNumericId = null;
+        this.unitPriceCents = null;
+        this.index = index;
+    }
+
+    /**
+     * Returns the unit price of the product with the given ordinal in cents.
+     *
+     * @param ordinal the ordinal of the product
+     * @return the unit price in cents
+     */
+    public long getUnitPriceCents(int ordinal) {
+        return index == null ? unitPriceCents[ordinal] : index.getLong(ordinal);
+    }
+
+    /**
+     * Returns the ordinal of a product whose ID is a number written without
+     * sign or leading zeros. Parsers use it to resolve numeric IDs without
+     * building a String.
+     *
+     * @param numericId the ID of the product as a number
+     * @return the ordinal of the product, or -1 if it is not in the catalog
+     */
+    public int ordinalOf(long numericId) {
+        return index == null ? ordinalsByNumericId.get(numericId) : index.ordinalOf(numericId);
+    }
+
+    /**
+     * Returns the ordinal of a product.
+     *
+     * @param productId the ID of the product
+     * @return the ordinal of the product, or -1 if it is not in the catalog
+     */
+    public int ordinalOf(String productId) {
+        if (index != null) {
+            long numericId = toCanonicalNumber(productId);
+            return numericId >= 0 ? index.ordinalOf(numericId) : index.ordinalOfId(productId);
+        }
+        Integer ordinal = ordinalsById.get(productId);
+        return ordinal == null ? -1 : ordinal;
+    }
+
+    /**
+     * Returns the product with the given ID.
+     *
+     * @param productId the ID of the product
+     * @return the product, or null if it is not in the catalog
+     */
+    public Product getProduct(String productId) {
+        int ordinal = ordinalOf(productId);
+        return ordinal < 0 ? null : getProductAt(ordinal);
+    }
+
+    /**
+     * Returns the product with the given ordinal.
+     *
+     * @param ordinal the ordinal of the product
+     * @return the product
+     */
+    public Product getProductAt(int ordinal) {
+        if (index == null) {
+            return products.get(ordinal);
+        }
+        checkOrdinal(ordinal);
+        return new Product().setProductId(index.getString(ordinal, 0)).setProductName(index.getString(ordinal, 1))
+                .setUnitPrice(index.getDouble(ordinal));
+    }
+
+    /**
+     * Returns the ID of the product with the given ordinal, without building the
+     * product when the catalog is backed by an index.
+     *
+     * @param ordinal the ordinal of the product
+     * @return the ID of the product
+     */
+    public String getProductId(int ordinal) {
+        if (index == null) {
+            return products.get(ordinal).getProductId();
+        }
+        checkOrdinal(ordinal);
+        return index.getString(ordinal, 0);
+    }
+
+    /**
+     * Returns the products of the catalog ordered by ordinal.
+     *
+     * @return an unmodifiable list of products
+     */
+    public List<Product> getProducts() {
+        if (index == null) {
+            return Collections.unmodifiableList(products);
+        }
+        return new AbstractList<>() {
+            @Override
+            public Product get(int ordinal) {
+                return getProductAt(ordinal);
+            }
+
+            @Override
+            public int size() {
+                return index.size();
+            }
+        };
+    }
+
+    /**
+     * Returns the number of products in the catalog.
+     *
+     * @return the number of products
+     */
+    public int size() {
+        return index == null ? products.size() : index.size();
+    }
+
+    /**
+     * Computes a fingerprint of the IDs and unit prices of the products, in
+     * ordinal order. Two catalogs with the same fingerprint resolve and price
+     * sales lines the same way.
+     *
+     * @return the fingerprint of the catalog
+     */
+    public long fingerprint() {
+        if (index != null) {
+            return index.fingerprint();
+        }
+        long hash = 0xCBF29CE484222325L ^ products.size();
+        for (int i = 0; i < products.size(); i++) {
+            hash = (hash ^ products.get(i).getProductId().hashCode()) * 0x100000001B3L;
+            hash = (hash ^ unitPriceCents[i]) * 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Computes a fingerprint of the IDs of the products only, in ordinal order.
+     * It is the state of an FNV-1a hash of the hash codes of the IDs, so it can
+     * be extended with more values.
+     *
+     * @return the fingerprint of the IDs
+     */
+    public long idFingerprint() {
+        if (index != null) {
+            return index.idFingerprint();
+        }
+        long hash = 0xCBF29CE484222325L;
+        for (Product product : products) {
+            hash = (hash ^ product.getProductId().hashCode()) * 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Converts an ID written only with digits and without leading zeros to a
+     * number.
+     *
+     * @param productId the ID of the product
+     * @return the ID as a number, or -1 if it is not in canonical numeric form
+     */
+    static long toCanonicalNumber(String productId) {
+        int length = productId.length();
+        if (length == 0 || length > 18 || (length > 1 && productId.charAt(0) == '0')) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            char c = productId.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Checks that an ordinal is in the index, since the mapping may be larger
+     * than its entries.
+     */
+    private void checkOrdinal(int ordinal) {
+        if (ordinal < 0 || ordinal >= index.size()) {
+            throw new IndexOutOfBoundsException("The catalog has no product with ordinal " + ordinal);
+        }
+    }
+
+    /**
+     * Checks if the catalog has no products.
+     *
+     * @return true if the catalog is empty, false otherwise
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+}
@@ -0,0 +1,101 @@
+package com.poli.service;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The QuarantineFile class records the lines left out of the totals, one row
+ * per line with the name of its file, its line number and the
+ * {@link RejectReason}. Rows are appended, so the quarantine of every run is
+ * kept, and a header is written when the file is created. It is shared by the
+ * threads reading the sales files; rejected lines are rare, so writes are
+ * simply synchronized.
+ */
+public class QuarantineFile implements Closeable {
+    private static final String HEADER = "file;line;reason";
+
+    private final Path path;
+    private final BufferedWriter writer;
+    private long rejectedLines;
+
+    /**
+     * Opens a quarantine file, creating it and its folder if they do not exist.
+     *
+     * @param path the path of the quarantine file
+     * @throws IOException if the file cannot be opened
+     */
+    public QuarantineFile(Path path) throws IOException {
+        this.path = path;
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        boolean isNew = !Files.exists(path) || Files.size(path) == 0;
+        this.writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND);
+        if (isNew) {
+            writer.write(HEADER);
+            writer.newLine();
+        }
+    }
+
+    /**
+     * Records a rejected line.
+     *
+     * @param fileName   the name of the file of the line
+     * @param lineNumber the number of the line in its file, starting at 1
+     * @param reason     why the line was rejected
+     * @throws IOException if the row cannot be written
+     */
+    public synchronized void reject(String fileName, long lineNumber, RejectReason reason) throws IOException {
+        writer.write(fileName);
+        writer.write(';');
+        writer.write(Long.toString(lineNumber));
+        writer.write(';');
+        writer.write(reason.name());
+        writer.newLine();
+        rejectedLines++;
+    }
+
+    /**
+     * Writes the buffered rows to the file.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    public synchronized void flush() throws IOException {
+        writer.flush();
+    }
+
+    /**
+     * Returns the number of lines recorded since the file was opened.
+     *
+     * @return the number of rejected lines
+     */
+    public synchronized long getRejectedLines() {
+        return rejectedLines;
+    }
+
+    /**
+     * Returns the path of the quarantine file.
+     *
+     * @return the path
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Writes the pending rows and closes the file.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,22 @@
+package com.poli.service;
+
+/**
+ * The RejectReason enum lists why a line of a sales file, or of the catalog of
+ * products or salesmen, is left out of the totals.
+ */
+public enum RejectReason {
+    /** The salesman of the file is not in the directory. */
+    UNKNOWN_SALESMAN,
+    /** The product of the line is not in the catalog. */
+    UNKNOWN_PRODUCT,
+    /** The line does not have the number of fields of its file. */
+    WRONG_FIELD_COUNT,
+    /** A numeric field has characters that are not part of a number. */
+    NOT_A_NUMBER,
+    /** The quantity sold is zero or negative. */
+    NON_POSITIVE_QUANTITY,
+    /** The unit price of a product is zero or negative. */
+    NON_POSITIVE_PRICE,
+    /** A number, or the amount of the line, does not fit in its type. */
+    OVERFLOW
+}
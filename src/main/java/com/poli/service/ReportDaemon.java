@@ -0,0 +1,198 @@
+package com.poli.service;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The ReportDaemon class keeps the reports continuously up to date. It watches
+ * the salesmen folder and the information folder, folds new or modified
+ * salesmen files into the in-memory aggregate of an
+ * {@link IncrementalProcessor}, and rewrites the reports once the folders have
+ * been quiet for the debounce period, or at the latest once the maximum latency
+ * has passed since the first pending change, so a folder that never stops
+ * changing still gets its reports. A change in the information folder reloads
+ * the catalog of products and the directory of salesmen, and so does an
+ * overflow of the events of either folder, since the changes it lost are not
+ * known.
+ * <p>
+ * A refresh that fails is logged and retried on the next change, reloading the
+ * catalog and the directory.
+ */
+public class ReportDaemon {
+    private static final Logger LOGGER = Logger.getLogger(ReportDaemon.class.getName());
+
+    private final FileManager fileManager;
+    private final IncrementalProcessor processor;
+    private final String infoFolderPath;
+    private final String salesFolderPath;
+    private final String reportsFolderPath;
+    private final Duration debounce;
+    private final int reportLimit;
+    private Duration maxLatency;
+    private long sortMemory;
+    private ProductCatalog catalog;
+    private SalesmanDirectory directory;
+
+    /**
+     * Creates a daemon.
+     *
+     * @param fileManager       the file manager used to read and write files
+     * @param processor         the incremental processor holding the aggregate
+     * @param infoFolderPath    the folder with the products and salesmen files
+     * @param salesFolderPath   the folder with the sales files of the salesmen
+     * @param reportsFolderPath the folder where the reports are written
+     * @param debounce          how long the folders must be quiet before the
+     *                          reports are rewritten
+     * @param reportLimit       the maximum number of lines of each report
+     */
+    public ReportDaemon(FileManager fileManager, IncrementalProcessor processor, String infoFolderPath,
+            String salesFolderPath, String reportsFolderPath, Duration debounce, int reportLimit) {
+        this.fileManager = fileManager;
+        this.processor = processor;
+        this.infoFolderPath = infoFolderPath;
+        this.salesFolderPath = salesFolderPath;
+        this.reportsFolderPath = reportsFolderPath;
+        this.debounce = debounce;
+        this.reportLimit = reportLimit;
+        this.maxLatency = debounce.multipliedBy(5);
+    }
+
+    /**
+     * Sets the longest time the reports wait for the folders to be quiet after a
+     * change. It defaults to five times the debounce period.
+     *
+     * @param maxLatency the maximum time between a change and the rewrite of
+     *                   the reports
+     * @return the updated ReportDaemon object
+     */
+    public ReportDaemon setMaxLatency(Duration maxLatency) {
+        this.maxLatency = maxLatency;
+        return this;
+    }
+
+    /**
+     * Sets the memory budget of the sort of the reports. With a budget the
+     * reports are sorted on disk with {@link ExternalReportSorter}s, otherwise
+     * in memory.
+     *
+     * @param sortMemory the approximate number of bytes of report lines kept in
+     *                   memory by each sort, or 0 to sort in memory
+     * @return the updated ReportDaemon object
+     */
+    public ReportDaemon setSortMemory(long sortMemory) {
+        this.sortMemory = sortMemory;
+        return this;
+    }
+
+    /**
+     * Writes the reports and then watches the folders until the thread is
+     * interrupted.
+     *
+     * @throws IOException          if the folders cannot be watched
+     * @throws InterruptedException if the thread is interrupted while waiting for
+     *                              changes
+     */
+    public void run() throws IOException, InterruptedException {
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            Path infoFolder = Path.of(infoFolderPath);
+            Path salesFolder = Path.of(salesFolderPath);
+            infoFolder.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            salesFolder.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+
+            refresh(true);
+            LOGGER.log(Level.INFO, "Watching {0} and {1}", new Object[] { infoFolder, salesFolder });
+
+            boolean catalogChanged = false;
+            boolean salesChanged = false;
+            long deadline = 0;
+            long latestDeadline = 0;
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key;
+                if (catalogChanged || salesChanged) {
+                    long remaining = deadline - System.nanoTime();
+                    key = remaining > 0 ? watchService.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                } else {
+                    key = watchService.take();
+                }
+
+                if (key != null) {
+                    if (!catalogChanged && !salesChanged) {
+                        latestDeadline = System.nanoTime() + maxLatency.toNanos();
+                    }
+                    boolean isInfoFolder = infoFolder.equals(key.watchable());
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            // Events were lost, so anything may have changed
+                            LOGGER.log(Level.WARNING, "Events of {0} were lost, everything will be reloaded",
+                                    key.watchable());
+                            catalogChanged = true;
+                            salesChanged = true;
+                        } else if (isInfoFolder) {
+                            // The indexes written next to the files are not changes of the catalog
+                            catalogChanged |= !CatalogIndex.isIndexFile((Path) event.context());
+                        } else {
+                            salesChanged = true;
+                        }
+                    }
+                    key.reset();
+                    deadline = Math.min(System.nanoTime() + debounce.toNanos(), latestDeadline);
+                } else {
+                    refresh(catalogChanged);
+                    catalogChanged = false;
+                    salesChanged = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Folds the pending changes into the aggregate and rewrites the reports.
+     *
+     * @param reloadCatalog true to read the products and salesmen files again
+     */
+    private void refresh(boolean reloadCatalog) {
+        SalesAggregate aggregate;
+        try {
+            if (reloadCatalog || catalog == null) {
+                long start = PipelineMetrics.get().startStage(PipelineStage.CATALOG_LOAD);
+                CatalogLoadEvent event = new CatalogLoadEvent();
+                event.begin();
+                directory = fileManager.loadSalesmanDirectory(infoFolderPath + "/salesmen_info.csv");
+                catalog = fileManager.loadProductCatalog(infoFolderPath + "/products.csv");
+                PipelineMetrics.get().endStage(PipelineStage.CATALOG_LOAD, start);
+                event.setProducts(catalog.size()).setSalesmen(directory.size()).commit();
+            }
+            aggregate = processor.update(salesFolderPath, catalog, directory);
+        } catch (RuntimeException e) {
+            // Keep watching: the next change reloads everything and tries again
+            LOGGER.log(Level.SEVERE, "An error occurred while updating the aggregate, it is retried on the next change",
+                    e);
+            catalog = null;
+            return;
+        }
+
+        try {
+            if (sortMemory > 0) {
+                fileManager.writeReportsExternal(aggregate, reportsFolderPath + "/salesmen_report.csv",
+                        reportsFolderPath + "/products_report.csv", sortMemory, reportLimit);
+            } else {
+                fileManager.writeReports(aggregate, reportsFolderPath + "/salesmen_report.csv",
+                        reportsFolderPath + "/products_report.csv", reportLimit);
+            }
+            LOGGER.info("The reports were updated successfully!");
+        } catch (Exception e) {
+            LOGGER.severe("An error occurred while updating the reports. " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.poli.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The ReportFileWriter class writes a report to a temporary file next to it
+ * and publishes it with an atomic move on {@link #commit()}, so a reader of the
+ * report sees either the previous version or the complete new one, never a
+ * partial file. If the writer is closed without a commit, the temporary file is
+ * deleted and the previous report is left untouched.
+ * <p>
+ * Lines are encoded straight into a large direct buffer, numbers and amounts
+ * digit by digit and ASCII names without an encoder, and the buffer is written
+ * through a {@link FileChannel} when it is full. Buffers are pooled, so
+ * writing the reports again allocates nothing. The content is not forced to the
+ * disk before the move: a crash may lose the last version of a report, but a
+ * running reader never sees it incomplete.
+ */
+public class ReportFileWriter implements Closeable {
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    private static final int MAX_NUMBER_LENGTH = 24;
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+    private static final ConcurrentLinkedQueue<ByteBuffer> BUFFERS = new ConcurrentLinkedQueue<>();
+
+    private final Path target;
+    private final Path temporary;
+    private final FileChannel channel;
+    private final byte[] digits = new byte[MAX_NUMBER_LENGTH];
+    private ByteBuffer buffer;
+    private long lines;
+    private boolean committed;
+
+    /**
+     * Opens a temporary file in the folder of the report, creating the folder if
+     * it does not exist.
+     *
+     * @param target the path the report is published to
+     * @throws IOException if the temporary file cannot be created
+     */
+    public ReportFileWriter(Path target) throws IOException {
+        this.target = target;
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        this.temporary = createTemporaryFile(target);
+        try {
+            this.channel = FileChannel.open(temporary, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        ByteBuffer pooled = BUFFERS.poll();
+        this.buffer = pooled != null ? pooled.clear() : ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    /**
+     * Creates an empty temporary file next to a file about to be published. The
+     * file gets the default permissions, unlike with
+     * {@link Files#createTempFile}, so the published file can be read by
+     * everyone who could read the one it replaces.
+     *
+     * @param target the path the file will be moved to
+     * @return the path of the temporary file
+     * @throws IOException if the file cannot be created
+     */
+    static Path createTemporaryFile(Path target) throws IOException {
+        Path folder = target.toAbsolutePath().getParent();
+        while (true) {
+            Path temporary = folder.resolve(target.getFileName() + "."
+                    + Long.toUnsignedString(ThreadLocalRandom.current().nextLong(), 36) + ".tmp");
+            try {
+                return Files.createFile(temporary);
+            } catch (FileAlreadyExistsException e) {
+                // Another writer drew the same name, draw again
+            }
+        }
+    }
+
+    /**
+     * Appends a text, encoded in UTF-8.
+     *
+     * @param text the text
+     * @return this writer
+     * @throws IOException if the buffer cannot be written to the file
+     */
+    public ReportFileWriter append(String text) throws IOException {
+        int length = text.length();
+        if (length > buffer.capacity()) {
+            return appendBytes(text.getBytes(StandardCharsets.UTF_8));
+        }
+        ensureRemaining(length);
+        int position = buffer.position();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80) {
+                // Encode the rest of the text only when it is not ASCII
+                buffer.position(position + i);
+                return appendBytes(text.substring(i).getBytes(StandardCharsets.UTF_8));
+            }
+            buffer.put(position + i, (byte) c);
+        }
+        buffer.position(position + length);
+        return this;
+    }
+
+    /**
+     * Appends an ASCII character.
+     *
+     * @param c the character, below 128
+     * @return this writer
+     * @throws IOException if the buffer cannot be written to the file
+     */
+    public ReportFileWriter append(char c) throws IOException {
+        if (c >= 0x80) {
+            return append(String.valueOf(c));
+        }
+        ensureRemaining(1);
+        buffer.put((byte) c);
+        return this;
+    }
+
+    /**
+     * Appends a whole number in decimal.
+     *
+     * @param value the number
+     * @return this writer
+     * @throws IOException if the buffer cannot be written to the file
+     */
+    public ReportFileWriter append(long value) throws IOException {
+        int start = MAX_NUMBER_LENGTH;
+        long rest = value;
+        do {
+            digits[--start] = (byte) ('0' + Math.abs(rest % 10));
+            rest /= 10;
+        } while (rest != 0);
+        if (value < 0) {
+            digits[--start] = '-';
+        }
+        ensureRemaining(MAX_NUMBER_LENGTH - start);
+        buffer.put(digits, start, MAX_NUMBER_LENGTH - start);
+        return this;
+    }
+
+    /**
+     * Appends an amount in cents with two decimals, like {@link Money#format}.
+     *
+     * @param cents the amount in cents
+     * @return this writer
+     * @throws IOException if the buffer cannot be written to the file
+     */
+    public ReportFileWriter appendCents(long cents) throws IOException {
+        if (cents < 0) {
+            append('-');
+        }
+        append(Math.abs(cents / 100));
+        int fraction = (int) Math.abs(cents % 100);
+        ensureRemaining(3);
+        buffer.put((byte) '.').put((byte) ('0' + fraction / 10)).put((byte) ('0' + fraction % 10));
+        return this;
+    }
+
+    /**
+     * Ends the current line with the line separator of the platform.
+     *
+     * @return this writer
+     * @throws IOException if the buffer cannot be written to the file
+     */
+    public ReportFileWriter newLine() throws IOException {
+        ensureRemaining(LINE_SEPARATOR.length);
+        buffer.put(LINE_SEPARATOR);
+        lines++;
+        return this;
+    }
+
+    /**
+     * Returns the number of lines ended so far.
+     *
+     * @return the number of lines
+     */
+    public long getLines() {
+        return lines;
+    }
+
+    /**
+     * Writes the buffered bytes, closes the temporary file and moves it onto the
+     * report, atomically when the file system supports it.
+     *
+     * @throws IOException if the file cannot be written or moved
+     */
+    public void commit() throws IOException {
+        writeBuffer();
+        channel.close();
+        try {
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        committed = true;
+    }
+
+    /**
+     * Returns the buffer to the pool and deletes the temporary file if the report
+     * was not committed.
+     *
+     * @throws IOException if the temporary file cannot be deleted
+     */
+    @Override
+    public void close() throws IOException {
+        if (buffer != null) {
+            BUFFERS.offer(buffer);
+            buffer = null;
+        }
+        if (!committed) {
+            try {
+                channel.close();
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        }
+    }
+
+    /**
+     * Appends bytes, writing the buffer to the file first if they do not fit.
+     */
+    private ReportFileWriter appendBytes(byte[] bytes) throws IOException {
+        if (bytes.length > buffer.capacity()) {
+            writeBuffer();
+            ByteBuffer wrapped = ByteBuffer.wrap(bytes);
+            while (wrapped.hasRemaining()) {
+                channel.write(wrapped);
+            }
+            return this;
+        }
+        ensureRemaining(bytes.length);
+        buffer.put(bytes);
+        return this;
+    }
+
+    /**
+     * Makes room in the buffer for the given number of bytes, at most its
+     * capacity.
+     */
+    private void ensureRemaining(int length) throws IOException {
+        if (buffer.remaining() < length) {
+            writeBuffer();
+        }
+    }
+
+    /**
+     * Writes the buffered bytes to the temporary file and empties the buffer.
+     */
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
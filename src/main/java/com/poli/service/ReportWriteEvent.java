@@ -0,0 +1,27 @@
+package com.poli.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The ReportWriteEvent class is a Flight Recorder event emitted for every
+ * report written, sort included. It is disabled by default.
+ */
+@Name("com.poli.ReportWrite")
+@Label("Report Write")
+@Category("Sales Pipeline")
+@Description("Sorting and writing of one report")
+@Enabled(false)
+@StackTrace(false)
+public class ReportWriteEvent extends Event {
+    @Label("Path")
+    String path;
+
+    @Label("Rows")
+    long rows;
+}
@@ -0,0 +1,188 @@
+package com.poli.service;
+
+import com.poli.pojo.Product;
+import com.poli.pojo.Salesman;
+
+/**
+ * The SalesAggregate class is the result of a {@link SalesAggregator}: the
+ * revenue of every salesman and the quantity sold of every product, computed in
+ * a single pass over the sales. Both reports are written from it.
+ */
+public class SalesAggregate {
+    private final ProductCatalog catalog;
+    private final SalesmanDirectory directory;
+    private final int[] salesmanOrdinals;
+    private final long[] revenueCentsBySalesman;
+    private final long[] linesBySalesman;
+    private final int[] productOrdinals;
+    private final long[] quantityByProduct;
+    private final long[] linesByProduct;
+    private final SalesCube cube;
+
+    /**
+     * Creates an aggregate. The arrays are owned by the aggregate.
+     *
+     * @param catalog           the catalog the product ordinals refer to
+     * @param directory         the directory the salesman ordinals refer to
+     * @param salesmanOrdinals  the ordinals of the salesmen with sales, in
+     *                          ascending order
+     * @param revenueCentsBySalesman the revenue of each salesman in cents, indexed
+     *                          by ordinal
+     * @param linesBySalesman   the number of lines of each salesman, indexed by
+     *                          ordinal
+     * @param productOrdinals   the ordinals of the products sold, in ascending
+     *                          order
+     * @param quantityByProduct the quantity sold of each product, indexed by
+     *                          ordinal
+     * @param linesByProduct    the number of lines of each product, indexed by
+     *                          ordinal
+     * @param cube              the cube of every pair of salesman and product,
+     *                          or null if none was built
+     */
+    SalesAggregate(ProductCatalog catalog, SalesmanDirectory directory, int[] salesmanOrdinals,
+            long[] revenueCentsBySalesman, long[] linesBySalesman, int[] productOrdinals, long[] quantityByProduct,
+            long[] linesByProduct, SalesCube cube) {
+        this.catalog = catalog;
+        this.directory = directory;
+        this.salesmanOrdinals = salesmanOrdinals;
+        this.revenueCentsBySalesman = revenueCentsBySalesman;
+        this.linesBySalesman = linesBySalesman;
+        this.productOrdinals = productOrdinals;
+        this.quantityByProduct = quantityByProduct;
+        this.linesByProduct = linesByProduct;
+        this.cube = cube;
+    }
+
+    /**
+     * Returns the catalog the products of the aggregate belong to.
+     *
+     * @return the catalog of products
+     */
+    public ProductCatalog getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * Returns the directory the salesmen of the aggregate belong to.
+     *
+     * @return the directory of salesmen
+     */
+    public SalesmanDirectory getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the number of salesmen with at least one sale.
+     *
+     * @return the number of salesmen with sales
+     */
+    public int getSalesmanCount() {
+        return salesmanOrdinals.length;
+    }
+
+    /**
+     * Returns the salesman at the given position, in directory order.
+     *
+     * @param index the position of the salesman
+     * @return the salesman
+     */
+    public Salesman getSalesman(int index) {
+        return directory.getSalesmanAt(salesmanOrdinals[index]);
+    }
+
+    /**
+     * Returns the revenue of the salesman at the given position.
+     *
+     * @param index the position of the salesman
+     * @return the total amount collected by the salesman, in cents
+     */
+    public long getSalesmanRevenueCents(int index) {
+        return revenueCentsBySalesman[salesmanOrdinals[index]];
+    }
+
+    /**
+     * Returns the number of sales lines of the salesman at the given position.
+     *
+     * @param index the position of the salesman
+     * @return the number of lines
+     */
+    public long getSalesmanLines(int index) {
+        return linesBySalesman[salesmanOrdinals[index]];
+    }
+
+    /**
+     * Returns the number of distinct products sold.
+     *
+     * @return the number of products sold
+     */
+    public int getProductCount() {
+        return productOrdinals.length;
+    }
+
+    /**
+     * Returns the product at the given position, in catalog order.
+     *
+     * @param index the position of the product
+     * @return the product
+     */
+    public Product getProduct(int index) {
+        return catalog.getProductAt(productOrdinals[index]);
+    }
+
+    /**
+     * Returns the quantity sold of the product at the given position.
+     *
+     * @param index the position of the product
+     * @return the total quantity sold of the product
+     */
+    public long getProductQuantity(int index) {
+        return quantityByProduct[productOrdinals[index]];
+    }
+
+    /**
+     * Returns the number of sales lines of the product at the given position.
+     *
+     * @param index the position of the product
+     * @return the number of lines
+     */
+    public long getProductLines(int index) {
+        return linesByProduct[productOrdinals[index]];
+    }
+
+    /**
+     * Returns the revenue of the product at the given position.
+     *
+     * @param index the position of the product
+     * @return the quantity sold multiplied by the unit price of the product, in
+     *         cents
+     * @throws ArithmeticException if the revenue overflows
+     */
+    public long getProductRevenueCents(int index) {
+        return Money.multiply(catalog.getUnitPriceCents(productOrdinals[index]), getProductQuantity(index));
+    }
+
+    /**
+     * Returns the cube of the sales, to answer questions the reports do not,
+     * such as the revenue of a salesman per product. It is only built when
+     * requested from the {@link SalesAggregator}, and never for totals merged
+     * from partial files, which do not keep the pairs of salesman and product.
+     *
+     * @return the cube of the sales, or null if none was built
+     */
+    public SalesCube getCube() {
+        return cube;
+    }
+
+    /**
+     * Returns a string representation of the SalesAggregate object.
+     *
+     * @return a string representation of the SalesAggregate object
+     */
+    @Override
+    public String toString() {
+        return "SalesAggregate{" +
+                "salesmen=" + salesmanOrdinals.length +
+                ", products=" + productOrdinals.length +
+                '}';
+    }
+}
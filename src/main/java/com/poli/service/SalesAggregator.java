@@ -0,0 +1,236 @@
+package com.poli.service;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import com.poli.pojo.Product;
+import com.poli.pojo.ProductSold;
+import com.poli.pojo.Sale;
+
+/**
+ * The SalesAggregator class computes, in a single pass over the sales, the
+ * revenue of every salesman and the quantity sold of every product. Revenues
+ * are accumulated in primitive longs of cents, with overflow detection. Totals
+ * are kept in arrays indexed by the ordinals of the catalog and the directory, so
+ * its memory depends only on the size of the catalog and the directory. It can
+ * be fed whole sales or, in streaming mode, single sales lines, and totals can
+ * be adjusted down again to take out the contribution of a file. On request it
+ * also builds a {@link SalesCube} of every pair of salesman and product.
+ */
+public class SalesAggregator implements SalesLineConsumer {
+    private final ProductCatalog catalog;
+    private final SalesmanDirectory directory;
+    private final long[] revenueCentsBySalesman;
+    private final long[] linesBySalesman;
+    private final long[] quantityByProduct;
+    private final long[] linesByProduct;
+    private final SalesCube cube;
+
+    /**
+     * Creates an aggregator for the given catalog and directory, without a cube.
+     *
+     * @param catalog   the catalog of available products
+     * @param directory the directory of known salesmen
+     */
+    public SalesAggregator(ProductCatalog catalog, SalesmanDirectory directory) {
+        this(catalog, directory, false);
+    }
+
+    /**
+     * Creates an aggregator for the given catalog and directory.
+     *
+     * @param catalog   the catalog of available products
+     * @param directory the directory of known salesmen
+     * @param buildCube true to also build a cube of every pair of salesman and
+     *                  product, fed by {@link #accept} and {@link #adjust}
+     */
+    public SalesAggregator(ProductCatalog catalog, SalesmanDirectory directory, boolean buildCube) {
+        this.catalog = catalog;
+        this.directory = directory;
+        this.revenueCentsBySalesman = new long[directory.size()];
+        this.linesBySalesman = new long[directory.size()];
+        this.quantityByProduct = new long[catalog.size()];
+        this.linesByProduct = new long[catalog.size()];
+        this.cube = buildCube ? new SalesCube(catalog, directory) : null;
+    }
+
+    /**
+     * Aggregates a list of sales without a catalog or directory at hand. They are
+     * built from the products and salesmen referenced by the sales.
+     *
+     * @param sales the list of sales
+     * @return the aggregate of the sales
+     */
+    public static SalesAggregate aggregate(List<Sale> sales) {
+        List<Product> products = sales.stream().flatMap(sale -> sale.getSoldProducts().stream())
+                .map(ProductSold::getProduct).distinct().toList();
+        return aggregate(sales, new ProductCatalog(products));
+    }
+
+    /**
+     * Aggregates a list of sales with a known catalog. The directory is built
+     * from the salesmen referenced by the sales.
+     *
+     * @param sales   the list of sales
+     * @param catalog the catalog of available products
+     * @return the aggregate of the sales
+     */
+    public static SalesAggregate aggregate(List<Sale> sales, ProductCatalog catalog) {
+        SalesmanDirectory directory = new SalesmanDirectory(sales.stream().map(Sale::getSalesman).distinct().toList());
+        return aggregate(new SalesTable().addAll(sales, catalog, directory), catalog, directory);
+    }
+
+    /**
+     * Aggregates the lines of a columnar sales table.
+     *
+     * @param table     the sales lines
+     * @param catalog   the catalog the product ordinals of the table refer to
+     * @param directory the directory the salesman ordinals of the table refer to
+     * @return the aggregate of the sales
+     */
+    public static SalesAggregate aggregate(SalesTable table, ProductCatalog catalog, SalesmanDirectory directory) {
+        return new SalesAggregator(catalog, directory).addAll(table).getAggregate();
+    }
+
+    /**
+     * Adds a sale to the running totals. Products or salesmen that are not in the
+     * catalog or directory are ignored.
+     *
+     * @param sale the sale to add
+     * @return the updated SalesAggregator object
+     */
+    public SalesAggregator add(Sale sale) {
+        if (sale.getSalesman() == null || sale.getSoldProducts() == null) {
+            return this;
+        }
+        int salesmanOrdinal = directory.ordinalOf(sale.getSalesman().getDocumentNumber());
+        if (salesmanOrdinal < 0) {
+            return this;
+        }
+        for (ProductSold productSold : sale.getSoldProducts()) {
+            Product product = productSold.getProduct();
+            int productOrdinal = product == null ? -1 : catalog.ordinalOf(product.getProductId());
+            if (productOrdinal >= 0) {
+                accept(salesmanOrdinal, productOrdinal, productSold.getSoldQuantity());
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Adds a single sales line to the running totals. The line is not retained.
+     *
+     * @param salesmanOrdinal the ordinal of the salesman in the directory
+     * @param productOrdinal  the ordinal of the product in the catalog
+     * @param quantity        the quantity sold
+     */
+    @Override
+    public void accept(int salesmanOrdinal, int productOrdinal, int quantity) {
+        adjust(salesmanOrdinal, productOrdinal, quantity, 1);
+    }
+
+    /**
+     * Adjusts the running totals by a number of lines of a product sold by a
+     * salesman. Negative values take a previous contribution out of the totals.
+     * A salesman or product whose line count drops to zero leaves the aggregate.
+     *
+     * @param salesmanOrdinal the ordinal of the salesman in the directory
+     * @param productOrdinal  the ordinal of the product in the catalog
+     * @param quantity        the quantity sold in those lines
+     * @param lines           the number of lines
+     * @throws ArithmeticException if a revenue overflows
+     */
+    public void adjust(int salesmanOrdinal, int productOrdinal, long quantity, long lines) {
+        if (cube != null) {
+            cube.adjust(salesmanOrdinal, productOrdinal, quantity, lines);
+        }
+        quantityByProduct[productOrdinal] += quantity;
+        linesByProduct[productOrdinal] += lines;
+        linesBySalesman[salesmanOrdinal] += lines;
+        revenueCentsBySalesman[salesmanOrdinal] = Money.add(revenueCentsBySalesman[salesmanOrdinal],
+                Money.multiply(catalog.getUnitPriceCents(productOrdinal), quantity));
+    }
+
+    /**
+     * Adds the totals of a salesman computed elsewhere, for example by another
+     * worker, to the running totals. The cube, if any, is not updated, as the
+     * totals do not tell which products were sold.
+     *
+     * @param salesmanOrdinal the ordinal of the salesman in the directory
+     * @param revenueCents    the revenue of the salesman in cents
+     * @param lines           the number of lines of the salesman
+     * @throws ArithmeticException if the revenue overflows
+     */
+    public void addSalesmanTotals(int salesmanOrdinal, long revenueCents, long lines) {
+        revenueCentsBySalesman[salesmanOrdinal] = Money.add(revenueCentsBySalesman[salesmanOrdinal], revenueCents);
+        linesBySalesman[salesmanOrdinal] += lines;
+    }
+
+    /**
+     * Adds the totals of a product computed elsewhere, for example by another
+     * worker, to the running totals. The cube, if any, is not updated, as the
+     * totals do not tell who sold the product.
+     *
+     * @param productOrdinal the ordinal of the product in the catalog
+     * @param quantity       the quantity sold of the product
+     * @param lines          the number of lines of the product
+     */
+    public void addProductTotals(int productOrdinal, long quantity, long lines) {
+        quantityByProduct[productOrdinal] += quantity;
+        linesByProduct[productOrdinal] += lines;
+    }
+
+    /**
+     * Adds every sale of a collection to the running totals.
+     *
+     * @param sales the sales to add
+     * @return the updated SalesAggregator object
+     */
+    public SalesAggregator addAll(Collection<Sale> sales) {
+        for (Sale sale : sales) {
+            add(sale);
+        }
+        return this;
+    }
+
+    /**
+     * Adds every line of a columnar sales table to the running totals.
+     *
+     * @param table the sales table
+     * @return the updated SalesAggregator object
+     */
+    public SalesAggregator addAll(SalesTable table) {
+        for (int line = 0; line < table.size(); line++) {
+            accept(table.getSalesmanOrdinal(line), table.getProductOrdinal(line), table.getQuantity(line));
+        }
+        return this;
+    }
+
+    /**
+     * Returns the aggregate of the sales added so far. Salesmen and products are
+     * listed in ordinal order, so the result does not depend on the order in
+     * which the files were read. The cube, if any, is copied with the totals.
+     *
+     * @return a snapshot of the running totals
+     */
+    public SalesAggregate getAggregate() {
+        return new SalesAggregate(catalog, directory, ordinalsWithLines(linesBySalesman),
+                revenueCentsBySalesman.clone(), linesBySalesman.clone(), ordinalsWithLines(linesByProduct),
+                quantityByProduct.clone(), linesByProduct.clone(), cube == null ? null : cube.copy());
+    }
+
+    /**
+     * Lists, in ascending order, the ordinals with at least one line.
+     */
+    private static int[] ordinalsWithLines(long[] linesByOrdinal) {
+        int[] ordinals = new int[linesByOrdinal.length];
+        int count = 0;
+        for (int ordinal = 0; ordinal < linesByOrdinal.length; ordinal++) {
+            if (linesByOrdinal[ordinal] > 0) {
+                ordinals[count++] = ordinal;
+            }
+        }
+        return Arrays.copyOf(ordinals, count);
+    }
+}
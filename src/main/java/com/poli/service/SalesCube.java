@@ -0,0 +1,582 @@
+package com.poli.service;
+
+import java.util.Arrays;
+
+/**
+ * The SalesCube class holds the quantity and number of lines of every pair of
+ * salesman and product with sales, so slices such as the revenue of a salesman
+ * per product or the top sellers of a product can be answered without reading
+ * the sales again. Only the pairs with sales are stored, in primitive columns
+ * of cells found through a {@link LongIntHashMap}, and the cells of every
+ * salesman (a row) and of every product (a column) are chained so a slice only
+ * visits its own cells. The totals of rows, columns and the whole cube are
+ * kept up to date as cells change, so they cost a single array read.
+ * <p>
+ * A cube is built by a {@link SalesAggregator} during ingestion and handed out
+ * as a copy with every {@link SalesAggregate}, which is never changed again and
+ * can be queried from several threads. Revenues are in cents, computed from the
+ * unit prices of the catalog, and rankings break ties by the lowest ordinal,
+ * like the reports.
+ */
+public class SalesCube {
+    private static final int INITIAL_CELLS = 64;
+
+    private final long[] unitPriceCents;
+    private final LongIntHashMap cellsByKey;
+    private final int[] rowHeads;
+    private final int[] rowSizes;
+    private final int[] columnHeads;
+    private final int[] columnSizes;
+    private final long[] revenueCentsBySalesman;
+    private final long[] quantityBySalesman;
+    private final long[] linesBySalesman;
+    private final long[] quantityByProduct;
+    private final long[] linesByProduct;
+    private int[] cellSalesmen;
+    private int[] cellProducts;
+    private long[] cellQuantities;
+    private long[] cellLines;
+    private int[] nextInRow;
+    private int[] nextInColumn;
+    private int cellCount;
+    private int nonEmptyCells;
+    private long totalRevenueCents;
+    private long totalQuantity;
+    private long totalLines;
+
+    /**
+     * Creates an empty cube for the given catalog and directory.
+     *
+     * @param catalog   the catalog the product ordinals refer to
+     * @param directory the directory the salesman ordinals refer to
+     */
+    SalesCube(ProductCatalog catalog, SalesmanDirectory directory) {
+        this.unitPriceCents = new long[catalog.size()];
+        for (int product = 0; product < unitPriceCents.length; product++) {
+            unitPriceCents[product] = catalog.getUnitPriceCents(product);
+        }
+        this.cellsByKey = new LongIntHashMap(INITIAL_CELLS, -1);
+        this.rowHeads = new int[directory.size()];
+        this.rowSizes = new int[directory.size()];
+        this.columnHeads = new int[catalog.size()];
+        this.columnSizes = new int[catalog.size()];
+        Arrays.fill(rowHeads, -1);
+        Arrays.fill(columnHeads, -1);
+        this.revenueCentsBySalesman = new long[directory.size()];
+        this.quantityBySalesman = new long[directory.size()];
+        this.linesBySalesman = new long[directory.size()];
+        this.quantityByProduct = new long[catalog.size()];
+        this.linesByProduct = new long[catalog.size()];
+        this.cellSalesmen = new int[INITIAL_CELLS];
+        this.cellProducts = new int[INITIAL_CELLS];
+        this.cellQuantities = new long[INITIAL_CELLS];
+        this.cellLines = new long[INITIAL_CELLS];
+        this.nextInRow = new int[INITIAL_CELLS];
+        this.nextInColumn = new int[INITIAL_CELLS];
+    }
+
+    /**
+     * Creates a compact copy of a cube that can be changed independently of it.
+     * The cells of every salesman are laid out next to each other and the cells
+     * of every product in ascending salesman order, so the slices of the copy
+     * read memory in order, and the cells left without sales are dropped.
+     */
+    private SalesCube(SalesCube other) {
+        this.unitPriceCents = other.unitPriceCents;
+        this.cellsByKey = new LongIntHashMap(other.nonEmptyCells, -1);
+        this.rowHeads = new int[other.rowHeads.length];
+        this.rowSizes = new int[other.rowSizes.length];
+        this.columnHeads = new int[other.columnHeads.length];
+        this.columnSizes = new int[other.columnSizes.length];
+        Arrays.fill(rowHeads, -1);
+        Arrays.fill(columnHeads, -1);
+        this.revenueCentsBySalesman = other.revenueCentsBySalesman.clone();
+        this.quantityBySalesman = other.quantityBySalesman.clone();
+        this.linesBySalesman = other.linesBySalesman.clone();
+        this.quantityByProduct = other.quantityByProduct.clone();
+        this.linesByProduct = other.linesByProduct.clone();
+        this.cellSalesmen = new int[other.nonEmptyCells];
+        this.cellProducts = new int[other.nonEmptyCells];
+        this.cellQuantities = new long[other.nonEmptyCells];
+        this.cellLines = new long[other.nonEmptyCells];
+        this.nextInRow = new int[other.nonEmptyCells];
+        this.nextInColumn = new int[other.nonEmptyCells];
+        for (int salesman = 0; salesman < rowHeads.length; salesman++) {
+            for (int cell = other.rowHeads[salesman]; cell >= 0; cell = other.nextInRow[cell]) {
+                if (other.cellLines[cell] > 0) {
+                    copyCell(other, cell);
+                }
+            }
+        }
+        // Chain the columns backwards so every column lists its salesmen in order
+        for (int cell = cellCount - 1; cell >= 0; cell--) {
+            nextInColumn[cell] = columnHeads[cellProducts[cell]];
+            columnHeads[cellProducts[cell]] = cell;
+        }
+        this.nonEmptyCells = cellCount;
+        this.totalRevenueCents = other.totalRevenueCents;
+        this.totalQuantity = other.totalQuantity;
+        this.totalLines = other.totalLines;
+    }
+
+    /**
+     * Adjusts the cell of a salesman and a product, and the totals of its row,
+     * its column and the cube. Negative values take a previous contribution out.
+     *
+     * @param salesmanOrdinal the ordinal of the salesman in the directory
+     * @param productOrdinal  the ordinal of the product in the catalog
+     * @param quantity        the quantity sold in those lines
+     * @param lines           the number of lines
+     * @throws ArithmeticException if a revenue overflows
+     */
+    void adjust(int salesmanOrdinal, int productOrdinal, long quantity, long lines) {
+        long revenueCents = Money.multiply(unitPriceCents[productOrdinal], quantity);
+        long salesmanRevenueCents = Money.add(revenueCentsBySalesman[salesmanOrdinal], revenueCents);
+        long cubeRevenueCents = Money.add(totalRevenueCents, revenueCents);
+        int cell = cellsByKey.get(keyOf(salesmanOrdinal, productOrdinal));
+        if (cell < 0) {
+            cell = addCell(salesmanOrdinal, productOrdinal);
+        }
+        long previousLines = cellLines[cell];
+        cellQuantities[cell] += quantity;
+        cellLines[cell] += lines;
+        if (previousLines <= 0 && cellLines[cell] > 0) {
+            nonEmptyCells++;
+        } else if (previousLines > 0 && cellLines[cell] <= 0) {
+            nonEmptyCells--;
+        }
+        revenueCentsBySalesman[salesmanOrdinal] = salesmanRevenueCents;
+        quantityBySalesman[salesmanOrdinal] += quantity;
+        linesBySalesman[salesmanOrdinal] += lines;
+        quantityByProduct[productOrdinal] += quantity;
+        linesByProduct[productOrdinal] += lines;
+        totalRevenueCents = cubeRevenueCents;
+        totalQuantity += quantity;
+        totalLines += lines;
+    }
+
+    /**
+     * Returns a copy of the cube that is not changed by later adjustments.
+     *
+     * @return the copy
+     */
+    SalesCube copy() {
+        return new SalesCube(this);
+    }
+
+    /**
+     * Returns the quantity of a product sold by a salesman.
+     *
+     * @param salesmanOrdinal the ordinal of the salesman in the directory
+     * @param productOrdinal  the ordinal of the product in the catalog
+     * @return the quantity sold, 0 if the salesman never sold the product
+     */
+    public long getQuantity(int salesmanOrdinal, int productOrdinal) {
+        int cell = cellsByKey.get(keyOf(salesmanOrdinal, productOrdinal));
+        return cell < 0 ? 0 : cellQuantities[cell];
+    }
+
+    /**
+     * Returns the number of sales lines of a product sold by a salesman.
+     *
+     * @param salesmanOrdinal the ordinal of the salesman in the directory
+     * @param productOrdinal  the ordinal of the product in the catalog
+     * @return the number of lines, 0 if the salesman never sold the product
+     */
+    public long getLines(int salesmanOrdinal, int productOrdinal) {
+        int cell = cellsByKey.get(keyOf(salesmanOrdinal, productOrdinal));
+        return cell < 0 ? 0 : cellLines[cell];
+    }
+
+    /**
+     * Returns the revenue of a product sold by a salesman.
+     *
+     * @param salesmanOrdinal the ordinal of the salesman in the directory
+     * @param productOrdinal  the ordinal of the product in the catalog
+     * @return the revenue in cents
+     * @throws ArithmeticException if the revenue overflows
+     */
+    public long getRevenueCents(int salesmanOrdinal, int productOrdinal) {
+        return Money.multiply(unitPriceCents[productOrdinal],
+                getQuantity(salesmanOrdinal, productOrdinal));
+    }
+
+    /**
+     * Returns the revenue of a salesman over every product.
+     *
+     * @param salesmanOrdinal the ordinal of the salesman in the directory
+     * @return the revenue in cents
+     */
+    public long getSalesmanRevenueCents(int salesmanOrdinal) {
+        return revenueCentsBySalesman[salesmanOrdinal];
+    }
+
+    /**
+     * Returns the quantity sold by a salesman over every product.
+     *
+     * @param salesmanOrdinal the ordinal of the salesman in the directory
+     * @return the quantity sold
+     */
+    public long getSalesmanQuantity(int salesmanOrdinal) {
+        return quantityBySalesman[salesmanOrdinal];
+    }
+
+    /**
+     * Returns the number of sales lines of a salesman.
+     *
+     * @param salesmanOrdinal the ordinal of the salesman in the directory
+     * @return the number of lines
+     */
+    public long getSalesmanLines(int salesmanOrdinal) {
+        return linesBySalesman[salesmanOrdinal];
+    }
+
+    /**
+     * Returns the revenue of a product over every salesman.
+     *
+     * @param productOrdinal the ordinal of the product in the catalog
+     * @return the revenue in cents
+     * @throws ArithmeticException if the revenue overflows
+     */
+    public long getProductRevenueCents(int productOrdinal) {
+        return Money.multiply(unitPriceCents[productOrdinal], quantityByProduct[productOrdinal]);
+    }
+
+    /**
+     * Returns the quantity sold of a product over every salesman.
+     *
+     * @param productOrdinal the ordinal of the product in the catalog
+     * @return the quantity sold
+     */
+    public long getProductQuantity(int productOrdinal) {
+        return quantityByProduct[productOrdinal];
+    }
+
+    /**
+     * Returns the number of sales lines of a product.
+     *
+     * @param productOrdinal the ordinal of the product in the catalog
+     * @return the number of lines
+     */
+    public long getProductLines(int productOrdinal) {
+        return linesByProduct[productOrdinal];
+    }
+
+    /**
+     * Returns the revenue of the whole cube.
+     *
+     * @return the revenue in cents
+     */
+    public long getTotalRevenueCents() {
+        return totalRevenueCents;
+    }
+
+    /**
+     * Returns the quantity sold in the whole cube.
+     *
+     * @return the quantity sold
+     */
+    public long getTotalQuantity() {
+        return totalQuantity;
+    }
+
+    /**
+     * Returns the number of sales lines of the whole cube.
+     *
+     * @return the number of lines
+     */
+    public long getTotalLines() {
+        return totalLines;
+    }
+
+    /**
+     * Returns the number of pairs of salesman and product with sales.
+     *
+     * @return the number of cells with at least one line
+     */
+    public int getCellCount() {
+        return nonEmptyCells;
+    }
+
+    /**
+     * Returns the salesmen with the highest revenue.
+     *
+     * @param limit the maximum number of salesmen
+     * @return the ordinals of the salesmen, best first
+     * @throws IllegalArgumentException if the limit is not positive
+     */
+    public int[] topSalesmen(int limit) {
+        checkLimit(limit);
+        TopK top = new TopK(Math.min(limit, linesBySalesman.length));
+        for (int salesman = 0; salesman < linesBySalesman.length; salesman++) {
+            if (linesBySalesman[salesman] > 0) {
+                top.offer(revenueCentsBySalesman[salesman], salesman);
+            }
+        }
+        return top.drainTieBreakers();
+    }
+
+    /**
+     * Returns the products with the highest revenue.
+     *
+     * @param limit the maximum number of products
+     * @return the ordinals of the products, best first
+     * @throws IllegalArgumentException if the limit is not positive
+     * @throws ArithmeticException if a revenue overflows
+     */
+    public int[] topProducts(int limit) {
+        checkLimit(limit);
+        TopK top = new TopK(Math.min(limit, linesByProduct.length));
+        for (int product = 0; product < linesByProduct.length; product++) {
+            if (linesByProduct[product] > 0) {
+                top.offer(getProductRevenueCents(product), product);
+            }
+        }
+        return top.drainTieBreakers();
+    }
+
+    /**
+     * Returns the products a salesman collected the most revenue with. Only the
+     * cells of the salesman are visited.
+     *
+     * @param salesmanOrdinal the ordinal of the salesman in the directory
+     * @param limit           the maximum number of products
+     * @return the ordinals of the products, best first
+     * @throws IllegalArgumentException if the limit is not positive
+     * @throws ArithmeticException if a revenue overflows
+     */
+    public int[] topProductsOf(int salesmanOrdinal, int limit) {
+        checkLimit(limit);
+        TopK top = new TopK(Math.min(limit, rowSizes[salesmanOrdinal]));
+        for (int cell = rowHeads[salesmanOrdinal]; cell >= 0; cell = nextInRow[cell]) {
+            if (cellLines[cell] > 0) {
+                top.offer(Money.multiply(unitPriceCents[cellProducts[cell]], cellQuantities[cell]),
+                        cellProducts[cell]);
+            }
+        }
+        return top.drainTieBreakers();
+    }
+
+    /**
+     * Returns the salesmen that collected the most revenue with a product. Only
+     * the cells of the product are visited.
+     *
+     * @param productOrdinal the ordinal of the product in the catalog
+     * @param limit          the maximum number of salesmen
+     * @return the ordinals of the salesmen, best first
+     * @throws IllegalArgumentException if the limit is not positive
+     * @throws ArithmeticException if a revenue overflows
+     */
+    public int[] topSalesmenOf(int productOrdinal, int limit) {
+        checkLimit(limit);
+        long productPriceCents = unitPriceCents[productOrdinal];
+        TopK top = new TopK(Math.min(limit, columnSizes[productOrdinal]));
+        for (int cell = columnHeads[productOrdinal]; cell >= 0; cell = nextInColumn[cell]) {
+            if (cellLines[cell] > 0) {
+                top.offer(Money.multiply(productPriceCents, cellQuantities[cell]), cellSalesmen[cell]);
+            }
+        }
+        return top.drainTieBreakers();
+    }
+
+    /**
+     * Checks the number of results asked to a ranking.
+     */
+    private static void checkLimit(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("The limit must be positive, got " + limit);
+        }
+    }
+
+    /**
+     * Sums the revenue of the given salesmen with the given products. A null
+     * array selects every salesman or product, in which case the totals of the
+     * rows or columns are summed instead of the cells. Otherwise the cells of
+     * the side with fewer of them are visited, or every selected pair is looked
+     * up when there are fewer pairs than cells. An ordinal given twice is
+     * counted once.
+     *
+     * @param salesmanOrdinals the ordinals of the salesmen, or null for all
+     * @param productOrdinals  the ordinals of the products, or null for all
+     * @return the revenue in cents
+     * @throws ArithmeticException if the revenue overflows
+     */
+    public long sumRevenueCents(int[] salesmanOrdinals, int[] productOrdinals) {
+        return sum(salesmanOrdinals, productOrdinals, true);
+    }
+
+    /**
+     * Sums the quantity sold by the given salesmen of the given products, in the
+     * same way as {@link #sumRevenueCents(int[], int[])}.
+     *
+     * @param salesmanOrdinals the ordinals of the salesmen, or null for all
+     * @param productOrdinals  the ordinals of the products, or null for all
+     * @return the quantity sold
+     */
+    public long sumQuantity(int[] salesmanOrdinals, int[] productOrdinals) {
+        return sum(salesmanOrdinals, productOrdinals, false);
+    }
+
+    /**
+     * Returns a string representation of the SalesCube object.
+     *
+     * @return a string representation of the SalesCube object
+     */
+    @Override
+    public String toString() {
+        return "SalesCube{" +
+                "salesmen=" + rowHeads.length +
+                ", products=" + columnHeads.length +
+                ", cells=" + nonEmptyCells +
+                '}';
+    }
+
+    /**
+     * Sums the revenue or the quantity of a selection of the cube.
+     */
+    private long sum(int[] salesmanOrdinals, int[] productOrdinals, boolean revenue) {
+        if (salesmanOrdinals == null && productOrdinals == null) {
+            return revenue ? totalRevenueCents : totalQuantity;
+        }
+        int[] salesmen = salesmanOrdinals == null ? null : distinct(salesmanOrdinals);
+        int[] products = productOrdinals == null ? null : distinct(productOrdinals);
+        long total = 0;
+        if (products == null) {
+            for (int salesman : salesmen) {
+                total = revenue ? Money.add(total, revenueCentsBySalesman[salesman])
+                        : total + quantityBySalesman[salesman];
+            }
+            return total;
+        }
+        if (salesmen == null) {
+            for (int product : products) {
+                total = revenue ? Money.add(total, getProductRevenueCents(product))
+                        : total + quantityByProduct[product];
+            }
+            return total;
+        }
+
+        long rowCells = cellsOf(rowSizes, salesmen);
+        long columnCells = cellsOf(columnSizes, products);
+        if ((long) salesmen.length * products.length <= Math.min(rowCells, columnCells)) {
+            for (int salesman : salesmen) {
+                for (int product : products) {
+                    int cell = cellsByKey.get(keyOf(salesman, product));
+                    if (cell >= 0) {
+                        total = addCell(total, cell, revenue);
+                    }
+                }
+            }
+        } else if (rowCells <= columnCells) {
+            for (int salesman : salesmen) {
+                for (int cell = rowHeads[salesman]; cell >= 0; cell = nextInRow[cell]) {
+                    if (Arrays.binarySearch(products, cellProducts[cell]) >= 0) {
+                        total = addCell(total, cell, revenue);
+                    }
+                }
+            }
+        } else {
+            for (int product : products) {
+                for (int cell = columnHeads[product]; cell >= 0; cell = nextInColumn[cell]) {
+                    if (Arrays.binarySearch(salesmen, cellSalesmen[cell]) >= 0) {
+                        total = addCell(total, cell, revenue);
+                    }
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Adds the revenue or the quantity of a cell to a sum.
+     */
+    private long addCell(long total, int cell, boolean revenue) {
+        if (!revenue) {
+            return total + cellQuantities[cell];
+        }
+        return Money.add(total,
+                Money.multiply(unitPriceCents[cellProducts[cell]], cellQuantities[cell]));
+    }
+
+    /**
+     * Counts the cells of the given rows or columns.
+     */
+    private static long cellsOf(int[] sizes, int[] ordinals) {
+        long cells = 0;
+        for (int ordinal : ordinals) {
+            cells += sizes[ordinal];
+        }
+        return cells;
+    }
+
+    /**
+     * Returns the sorted, distinct ordinals of a selection.
+     */
+    private static int[] distinct(int[] ordinals) {
+        int[] sorted = ordinals.clone();
+        Arrays.sort(sorted);
+        int count = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                sorted[count++] = sorted[i];
+            }
+        }
+        return Arrays.copyOf(sorted, count);
+    }
+
+    /**
+     * Adds an empty cell at the head of its row and its column.
+     */
+    private int addCell(int salesmanOrdinal, int productOrdinal) {
+        if (cellCount == cellSalesmen.length) {
+            int capacity = Math.max(INITIAL_CELLS, cellCount * 2);
+            cellSalesmen = Arrays.copyOf(cellSalesmen, capacity);
+            cellProducts = Arrays.copyOf(cellProducts, capacity);
+            cellQuantities = Arrays.copyOf(cellQuantities, capacity);
+            cellLines = Arrays.copyOf(cellLines, capacity);
+            nextInRow = Arrays.copyOf(nextInRow, capacity);
+            nextInColumn = Arrays.copyOf(nextInColumn, capacity);
+        }
+        int cell = cellCount++;
+        cellSalesmen[cell] = salesmanOrdinal;
+        cellProducts[cell] = productOrdinal;
+        nextInRow[cell] = rowHeads[salesmanOrdinal];
+        rowHeads[salesmanOrdinal] = cell;
+        rowSizes[salesmanOrdinal]++;
+        nextInColumn[cell] = columnHeads[productOrdinal];
+        columnHeads[productOrdinal] = cell;
+        columnSizes[productOrdinal]++;
+        cellsByKey.put(keyOf(salesmanOrdinal, productOrdinal), cell);
+        return cell;
+    }
+
+    /**
+     * Appends a cell of another cube at the end of the row it belongs to, which
+     * is the last row copied so far.
+     */
+    private void copyCell(SalesCube other, int otherCell) {
+        int cell = cellCount++;
+        int salesman = other.cellSalesmen[otherCell];
+        int product = other.cellProducts[otherCell];
+        cellSalesmen[cell] = salesman;
+        cellProducts[cell] = product;
+        cellQuantities[cell] = other.cellQuantities[otherCell];
+        cellLines[cell] = other.cellLines[otherCell];
+        nextInRow[cell] = -1;
+        if (rowHeads[salesman] < 0) {
+            rowHeads[salesman] = cell;
+        } else {
+            nextInRow[cell - 1] = cell;
+        }
+        rowSizes[salesman]++;
+        columnSizes[product]++;
+        cellsByKey.put(keyOf(salesman, product), cell);
+    }
+
+    /**
+     * Packs the ordinals of a salesman and a product in the key of their cell.
+     */
+    private static long keyOf(int salesmanOrdinal, int productOrdinal) {
+        return (long) salesmanOrdinal << 32 | productOrdinal;
+    }
+}
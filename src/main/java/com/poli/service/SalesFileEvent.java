@@ -0,0 +1,38 @@
+package com.poli.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The SalesFileEvent class is a Flight Recorder event emitted for every sales
+ * file read. Like the other events of the pipeline it is disabled by default,
+ * so a disabled event is never filled nor committed. The {@code pipeline.jfc}
+ * settings at the root of the project enable all of them:
+ * {@code -XX:StartFlightRecording:settings=default,settings=pipeline.jfc,filename=run.jfr}.
+ */
+@Name("com.poli.SalesFile")
+@Label("Sales File")
+@Category("Sales Pipeline")
+@Description("Reading of one sales file")
+@Enabled(false)
+@StackTrace(false)
+public class SalesFileEvent extends Event {
+    @Label("File Name")
+    String fileName;
+
+    @Label("Size")
+    @DataAmount
+    long size;
+
+    @Label("Lines")
+    long lines;
+
+    @Label("Rejected Lines")
+    long rejectedLines;
+}
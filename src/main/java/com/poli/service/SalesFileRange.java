@@ -0,0 +1,92 @@
+package com.poli.service;
+
+import java.util.Arrays;
+
+/**
+ * The SalesFileRange class holds what a byte range of a large sales file adds
+ * to the aggregate, parsed by one thread: the totals of its products, its
+ * number of lines and its rejected lines. Rejected lines are numbered from the
+ * first line of the range, since the number of lines before it is only known
+ * once the previous ranges are parsed.
+ */
+class SalesFileRange {
+    private final FileContribution contribution = new FileContribution();
+    private long lines;
+    private long[] rejectedLineNumbers = new long[0];
+    private RejectReason[] rejectReasons = new RejectReason[0];
+    private int rejectedCount;
+
+    /**
+     * Returns the totals of the products of the range, which collect its valid
+     * lines.
+     *
+     * @return the contribution of the range
+     */
+    FileContribution getContribution() {
+        return contribution;
+    }
+
+    /**
+     * Records a rejected line of the range.
+     *
+     * @param reason     why the line was rejected
+     * @param lineNumber the number of the line in the range, starting at 1
+     */
+    void reject(RejectReason reason, long lineNumber) {
+        if (rejectedCount == rejectReasons.length) {
+            int capacity = Math.max(8, rejectedCount * 2);
+            rejectedLineNumbers = Arrays.copyOf(rejectedLineNumbers, capacity);
+            rejectReasons = Arrays.copyOf(rejectReasons, capacity);
+        }
+        rejectedLineNumbers[rejectedCount] = lineNumber;
+        rejectReasons[rejectedCount] = reason;
+        rejectedCount++;
+    }
+
+    /**
+     * Returns the number of lines of the range.
+     *
+     * @return the number of lines
+     */
+    long getLines() {
+        return lines;
+    }
+
+    /**
+     * Sets the number of lines of the range.
+     *
+     * @param lines the number of lines
+     */
+    void setLines(long lines) {
+        this.lines = lines;
+    }
+
+    /**
+     * Returns the number of rejected lines of the range.
+     *
+     * @return the number of rejected lines
+     */
+    int getRejectedCount() {
+        return rejectedCount;
+    }
+
+    /**
+     * Returns the number, in the range, of a rejected line.
+     *
+     * @param index the position of the rejected line
+     * @return the line number, starting at 1
+     */
+    long getRejectedLineNumber(int index) {
+        return rejectedLineNumbers[index];
+    }
+
+    /**
+     * Returns why a rejected line was rejected.
+     *
+     * @param index the position of the rejected line
+     * @return the reason
+     */
+    RejectReason getRejectReason(int index) {
+        return rejectReasons[index];
+    }
+}
@@ -0,0 +1,20 @@
+package com.poli.service;
+
+/**
+ * The SalesLineConsumer interface receives the sales lines of the salesmen
+ * files as soon as they are parsed, already resolved to the ordinals of the
+ * catalog and the directory. It lets the readers feed running totals without
+ * building Sale objects.
+ */
+@FunctionalInterface
+public interface SalesLineConsumer {
+
+    /**
+     * Accepts a sales line.
+     *
+     * @param salesmanOrdinal the ordinal of the salesman in the directory
+     * @param productOrdinal  the ordinal of the product in the catalog
+     * @param quantity        the quantity sold
+     */
+    void accept(int salesmanOrdinal, int productOrdinal, int quantity);
+}
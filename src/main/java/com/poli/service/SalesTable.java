@@ -0,0 +1,182 @@
+package com.poli.service;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import com.poli.pojo.Product;
+import com.poli.pojo.ProductSold;
+import com.poli.pojo.Sale;
+
+/**
+ * The SalesTable class stores sales lines column by column: one growable int
+ * array for the salesman ordinals, one for the product ordinals and one for the
+ * quantities. A line costs 12 bytes instead of a ProductSold object inside the
+ * list of a Sale, and aggregation loops read the columns sequentially.
+ * <p>
+ * It is the store the sales files are read into by
+ * {@link FileManager#readSalesTable}, and the one lists of sales are turned
+ * into before a {@link SalesAggregator} computes the totals of the reports.
+ */
+public class SalesTable implements SalesLineConsumer {
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private int[] salesmanOrdinals;
+    private int[] productOrdinals;
+    private int[] quantities;
+    private int size;
+
+    /**
+     * Creates an empty table.
+     */
+    public SalesTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty table with room for the given number of lines.
+     *
+     * @param initialCapacity the number of lines to allocate
+     */
+    public SalesTable(int initialCapacity) {
+        int capacity = Math.max(16, initialCapacity);
+        this.salesmanOrdinals = new int[capacity];
+        this.productOrdinals = new int[capacity];
+        this.quantities = new int[capacity];
+    }
+
+    /**
+     * Appends a sales line to the table.
+     *
+     * @param salesmanOrdinal the ordinal of the salesman in the directory
+     * @param productOrdinal  the ordinal of the product in the catalog
+     * @param quantity        the quantity sold
+     */
+    @Override
+    public void accept(int salesmanOrdinal, int productOrdinal, int quantity) {
+        if (size == quantities.length) {
+            int capacity = size + (size >> 1);
+            salesmanOrdinals = Arrays.copyOf(salesmanOrdinals, capacity);
+            productOrdinals = Arrays.copyOf(productOrdinals, capacity);
+            quantities = Arrays.copyOf(quantities, capacity);
+        }
+        salesmanOrdinals[size] = salesmanOrdinal;
+        productOrdinals[size] = productOrdinal;
+        quantities[size] = quantity;
+        size++;
+    }
+
+    /**
+     * Appends the lines of a collection of sales, one per product sold. Products
+     * or salesmen that are not in the catalog or directory are left out.
+     *
+     * @param sales     the sales to append
+     * @param catalog   the catalog the product ordinals refer to
+     * @param directory the directory the salesman ordinals refer to
+     * @return the updated SalesTable object
+     */
+    public SalesTable addAll(Collection<Sale> sales, ProductCatalog catalog, SalesmanDirectory directory) {
+        for (Sale sale : sales) {
+            if (sale.getSalesman() == null || sale.getSoldProducts() == null) {
+                continue;
+            }
+            int salesmanOrdinal = directory.ordinalOf(sale.getSalesman().getDocumentNumber());
+            if (salesmanOrdinal < 0) {
+                continue;
+            }
+            for (ProductSold productSold : sale.getSoldProducts()) {
+                Product product = productSold.getProduct();
+                int productOrdinal = product == null ? -1 : catalog.ordinalOf(product.getProductId());
+                if (productOrdinal >= 0) {
+                    accept(salesmanOrdinal, productOrdinal, productSold.getSoldQuantity());
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Drops the lines appended after the given number of lines, such as the
+     * lines of a file that could not be read to the end.
+     *
+     * @param newSize the number of lines to keep
+     * @throws IllegalArgumentException if the table has fewer lines
+     */
+    public void truncate(int newSize) {
+        if (newSize < 0 || newSize > size) {
+            throw new IllegalArgumentException("Invalid size " + newSize + " of a table of " + size + " lines");
+        }
+        size = newSize;
+    }
+
+    /**
+     * Feeds every line of the table to a consumer.
+     *
+     * @param consumer the consumer of the sales lines
+     */
+    public void forEachLine(SalesLineConsumer consumer) {
+        for (int i = 0; i < size; i++) {
+            consumer.accept(salesmanOrdinals[i], productOrdinals[i], quantities[i]);
+        }
+    }
+
+    /**
+     * Returns the salesman ordinal of a line.
+     *
+     * @param line the position of the line
+     * @return the ordinal of the salesman in the directory
+     */
+    public int getSalesmanOrdinal(int line) {
+        return salesmanOrdinals[line];
+    }
+
+    /**
+     * Returns the product ordinal of a line.
+     *
+     * @param line the position of the line
+     * @return the ordinal of the product in the catalog
+     */
+    public int getProductOrdinal(int line) {
+        return productOrdinals[line];
+    }
+
+    /**
+     * Returns the quantity of a line.
+     *
+     * @param line the position of the line
+     * @return the quantity sold
+     */
+    public int getQuantity(int line) {
+        return quantities[line];
+    }
+
+    /**
+     * Returns the number of lines of the table.
+     *
+     * @return the number of lines
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Releases the unused capacity of the columns.
+     */
+    public void trimToSize() {
+        salesmanOrdinals = Arrays.copyOf(salesmanOrdinals, size);
+        productOrdinals = Arrays.copyOf(productOrdinals, size);
+        quantities = Arrays.copyOf(quantities, size);
+    }
+
+    /**
+     * Returns a string representation of the SalesTable object.
+     *
+     * @return a string representation of the SalesTable object
+     */
+    @Override
+    public String toString() {
+        return "SalesTable{" +
+                "size=" + size +
+                ", capacity=" + quantities.length +
+                '}';
+    }
+}
@@ -0,0 +1,169 @@
+package com.poli.service;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.poli.pojo.Salesman;
+
+/**
+ * The SalesmanDirectory class holds the known salesmen indexed by their
+ * document number. The index is a primitive long keyed map, so resolving the
+ * salesman of a sales file does not box the document number. A directory can
+ * also be backed by a memory-mapped {@link CatalogIndex}, which builds
+ * salesmen only when they are asked for.
+ */
+public class SalesmanDirectory {
+    private final List<Salesman> salesmen;
+    private final LongIntHashMap ordinalsByDocument;
+    private final CatalogIndex index;
+
+    /**
+     * Creates a directory from a list of salesmen. When two salesmen share the
+     * same document number the first one wins, as it did with the linear
+     * lookups.
+     *
+     * @param salesmen the list of known salesmen
+     */
+    public SalesmanDirectory(List<Salesman> salesmen) {
+        this.salesmen = new ArrayList<>(salesmen.size());
+        this.ordinalsByDocument = new LongIntHashMap(salesmen.size(), -1);
+        for (Salesman salesman : salesmen) {
+            if (salesman != null && salesman.getDocumentNumber() != null
+                    && ordinalsByDocument.putIfAbsent(salesman.getDocumentNumber(), this.salesmen.size())) {
+                this.salesmen.add(salesman);
+            }
+        }
+        this.index = null;
+    }
+
+    /**
+     * Creates a directory backed by the index of a salesmen file.
+     *
+     * @param index the mapped index
+     */
+    SalesmanDirectory(CatalogIndex index) {
+        this.salesmen = null;
+        this.ordinalsByDocument = null;
+        this.index = index;
+    }
+
+    /**
+     * Returns the ordinal of a salesman.
+     *
+     * @param documentNumber the document number of the salesman
+     * @return the ordinal of the salesman, or -1 if it is not in the directory
+     */
+    public int ordinalOf(long documentNumber) {
+        return index == null ? ordinalsByDocument.get(documentNumber) : index.ordinalOf(documentNumber);
+    }
+
+    /**
+     * Returns the salesman with the given document number.
+     *
+     * @param documentNumber the document number of the salesman
+     * @return the salesman, or null if it is not in the directory
+     */
+    public Salesman getSalesman(long documentNumber) {
+        int ordinal = ordinalOf(documentNumber);
+        return ordinal < 0 ? null : getSalesmanAt(ordinal);
+    }
+
+    /**
+     * Returns the salesman with the given ordinal.
+     *
+     * @param ordinal the ordinal of the salesman
+     * @return the salesman
+     */
+    public Salesman getSalesmanAt(int ordinal) {
+        if (index == null) {
+            return salesmen.get(ordinal);
+        }
+        checkOrdinal(ordinal);
+        return new Salesman().setDocumentType(index.getString(ordinal, 0)).setDocumentNumber(index.getLong(ordinal))
+                .setFirstName(index.getString(ordinal, 1)).setLastName(index.getString(ordinal, 2));
+    }
+
+    /**
+     * Returns the document number of the salesman with the given ordinal,
+     * without building the salesman when the directory is backed by an index.
+     *
+     * @param ordinal the ordinal of the salesman
+     * @return the document number
+     */
+    public long getDocumentNumber(int ordinal) {
+        if (index == null) {
+            return salesmen.get(ordinal).getDocumentNumber();
+        }
+        checkOrdinal(ordinal);
+        return index.getLong(ordinal);
+    }
+
+    /**
+     * Returns the salesmen of the directory ordered by ordinal.
+     *
+     * @return an unmodifiable list of salesmen
+     */
+    public List<Salesman> getSalesmen() {
+        if (index == null) {
+            return Collections.unmodifiableList(salesmen);
+        }
+        return new AbstractList<>() {
+            @Override
+            public Salesman get(int ordinal) {
+                return getSalesmanAt(ordinal);
+            }
+
+            @Override
+            public int size() {
+                return index.size();
+            }
+        };
+    }
+
+    /**
+     * Returns the number of salesmen in the directory.
+     *
+     * @return the number of salesmen
+     */
+    public int size() {
+        return index == null ? salesmen.size() : index.size();
+    }
+
+    /**
+     * Computes a fingerprint of the document numbers of the salesmen, in ordinal
+     * order.
+     *
+     * @return the fingerprint of the directory
+     */
+    public long fingerprint() {
+        if (index != null) {
+            return index.fingerprint();
+        }
+        long hash = 0xCBF29CE484222325L ^ salesmen.size();
+        for (Salesman salesman : salesmen) {
+            hash = (hash ^ salesman.getDocumentNumber()) * 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Checks if the directory has no salesmen.
+     *
+     * @return true if the directory is empty, false otherwise
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Checks that an ordinal is in the index, since the mapping may be larger
+     * than its entries.
+     */
+    private void checkOrdinal(int ordinal) {
+        if (ordinal < 0 || ordinal >= index.size()) {
+            throw new IndexOutOfBoundsException("The directory has no salesman with ordinal " + ordinal);
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package com.poli.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.ObjIntConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The ScaleGenerator class generates input files of production size: millions
+ * of salesmen, products and sales lines, in the same layout as
+ * {@link GeneratorFilesTest}.
+ * <p>
+ * The files are generated in parallel and written in large blocks through
+ * {@link FileChannel}s. Every salesman, product and file of sales draws its
+ * values from its own {@link SplittableRandom}, derived from the seed and its
+ * position, so the same seed always produces byte-identical files whatever the
+ * number of threads. Document numbers are a permutation of the eight digit
+ * numbers, so they never repeat. The shape of the sales files is given by a
+ * {@link WorkloadProfile}.
+ */
+public class ScaleGenerator {
+    private static final Logger LOGGER = Logger.getLogger(ScaleGenerator.class.getName());
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private static final long PRODUCT_STREAM = 1;
+    private static final long SALESMAN_STREAM = 2;
+    private static final long SALES_STREAM = 3;
+    private static final int ROWS_PER_BLOCK = 65536;
+    private static final int SALESMEN_PER_TASK = 256;
+    private static final long FIRST_DOCUMENT = 10000000L;
+    private static final long DOCUMENT_RANGE = 90000000L;
+    private static final long DOCUMENT_STRIDE = 48271001L;
+    private static final long MIN_PRICE_CENTS = 1000;
+    private static final long MAX_PRICE_CENTS = 15000;
+
+    private final long seed;
+    private String outputFolder = "files";
+    private int salesmanCount = 10;
+    private int productCount = 50;
+    private int linesPerSalesman = 10;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private WorkloadProfile profile = WorkloadProfile.uniform();
+
+    /**
+     * Creates a generator whose output is fully determined by the given seed.
+     *
+     * @param seed the seed of every random value
+     */
+    public ScaleGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Sets the folder the {@code info} and {@code salesmen} folders are created
+     * in.
+     *
+     * @param outputFolder the path of the output folder
+     * @return this generator
+     */
+    public ScaleGenerator setOutputFolder(String outputFolder) {
+        this.outputFolder = outputFolder;
+        return this;
+    }
+
+    /**
+     * Sets the number of salesmen, which is also the number of sales files.
+     *
+     * @param salesmanCount the number of salesmen, at most 90 000 000
+     * @return this generator
+     */
+    public ScaleGenerator setSalesmanCount(int salesmanCount) {
+        if (salesmanCount < 0 || salesmanCount > DOCUMENT_RANGE) {
+            throw new IllegalArgumentException("The number of salesmen must be between 0 and " + DOCUMENT_RANGE);
+        }
+        this.salesmanCount = salesmanCount;
+        return this;
+    }
+
+    /**
+     * Sets the number of products of the catalog.
+     *
+     * @param productCount the number of products, at least 1
+     * @return this generator
+     */
+    public ScaleGenerator setProductCount(int productCount) {
+        if (productCount < 1) {
+            throw new IllegalArgumentException("The number of products must be at least 1");
+        }
+        this.productCount = productCount;
+        return this;
+    }
+
+    /**
+     * Sets the number of sales lines of every salesman.
+     *
+     * @param linesPerSalesman the number of lines per sales file
+     * @return this generator
+     */
+    public ScaleGenerator setLinesPerSalesman(int linesPerSalesman) {
+        if (linesPerSalesman < 0) {
+            throw new IllegalArgumentException("The number of lines per salesman cannot be negative");
+        }
+        this.linesPerSalesman = linesPerSalesman;
+        return this;
+    }
+
+    /**
+     * Sets the number of threads that generate the files.
+     *
+     * @param parallelism the number of threads, at least 1
+     * @return this generator
+     */
+    public ScaleGenerator setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("The parallelism must be at least 1");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Sets the shape of the sales files.
+     *
+     * @param profile the workload profile
+     * @return this generator
+     */
+    public ScaleGenerator setProfile(WorkloadProfile profile) {
+        this.profile = profile;
+        return this;
+    }
+
+    /**
+     * Generates the catalog of products, the information of the salesmen and one
+     * file of sales per salesman.
+     *
+     * @return the number of sales lines generated
+     * @throws IOException if a file cannot be written
+     */
+    public long generate() throws IOException {
+        Path infoFolder = Files.createDirectories(Path.of(outputFolder, "info"));
+        Path salesFolder = Files.createDirectories(Path.of(outputFolder, "salesmen"));
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism);
+        long lineCount;
+        try {
+            writeRows(infoFolder.resolve("products.csv"), productCount, this::appendProduct, workers);
+            writeRows(infoFolder.resolve("salesmen_info.csv"), salesmanCount, this::appendSalesman, workers);
+            lineCount = writeSalesFiles(salesFolder, new WorkloadSampler(profile, productCount), workers);
+        } finally {
+            workers.shutdownNow();
+        }
+        LOGGER.log(Level.INFO, "{0} products, {1} salesmen and {2} sales lines generated",
+                new Object[] { productCount, salesmanCount, lineCount });
+        return lineCount;
+    }
+
+    /**
+     * Returns the document number of the salesman at the given position.
+     *
+     * @param salesman the position of the salesman
+     * @return the document number, unique among the salesmen
+     */
+    public static long documentNumberOf(int salesman) {
+        return FIRST_DOCUMENT + salesman * DOCUMENT_STRIDE % DOCUMENT_RANGE;
+    }
+
+    /**
+     * Writes a file of rows in blocks. The blocks are rendered in parallel and
+     * written in order, with at most two blocks per thread waiting in memory.
+     */
+    private void writeRows(Path path, int rowCount, ObjIntConsumer<StringBuilder> appender,
+            ExecutorService workers) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Deque<Future<byte[]>> pending = new ArrayDeque<>();
+            for (int start = 0; start < rowCount; start += ROWS_PER_BLOCK) {
+                int first = start;
+                int end = (int) Math.min((long) start + ROWS_PER_BLOCK, rowCount);
+                pending.add(workers.submit(() -> {
+                    StringBuilder block = new StringBuilder((end - first) * 32);
+                    for (int row = first; row < end; row++) {
+                        appender.accept(block, row);
+                    }
+                    return block.toString().getBytes(StandardCharsets.US_ASCII);
+                }));
+                if (pending.size() >= 2 * parallelism) {
+                    write(channel, await(pending.poll()));
+                }
+            }
+            while (!pending.isEmpty()) {
+                write(channel, await(pending.poll()));
+            }
+        }
+    }
+
+    /**
+     * Writes one file of sales per salesman, every thread writing the files of a
+     * range of salesmen.
+     *
+     * @return the number of sales lines written
+     */
+    private long writeSalesFiles(Path folder, WorkloadSampler sampler, ExecutorService workers)
+            throws IOException {
+        List<Future<Long>> tasks = new ArrayList<>();
+        for (int start = 0; start < salesmanCount; start += SALESMEN_PER_TASK) {
+            int first = start;
+            int end = (int) Math.min((long) start + SALESMEN_PER_TASK, salesmanCount);
+            tasks.add(workers.submit(() -> {
+                StringBuilder content = new StringBuilder(16 + linesPerSalesman * 8);
+                long lines = 0;
+                for (int salesman = first; salesman < end; salesman++) {
+                    content.setLength(0);
+                    String fileName = fileNameOf(salesman);
+                    lines += appendSales(content, salesman, sampler);
+                    try (FileChannel channel = FileChannel.open(folder.resolve(fileName), StandardOpenOption.CREATE,
+                            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                        write(channel, content.toString().getBytes(StandardCharsets.US_ASCII));
+                    }
+                }
+                return lines;
+            }));
+        }
+        long lineCount = 0;
+        for (Future<Long> task : tasks) {
+            lineCount += await(task);
+        }
+        return lineCount;
+    }
+
+    /**
+     * Appends the row of a product: its ID, name and a price between 10 and 150.
+     */
+    private void appendProduct(StringBuilder row, int product) {
+        SplittableRandom random = randomOf(PRODUCT_STREAM, product);
+        int productId = product + 1;
+        long priceCents = random.nextLong(MIN_PRICE_CENTS, MAX_PRICE_CENTS + 1);
+        row.append(productId).append(";Product-").append(productId).append(';').append(Money.format(priceCents))
+                .append('\n');
+    }
+
+    /**
+     * Appends the row of the information of a salesman.
+     */
+    private void appendSalesman(StringBuilder row, int salesman) {
+        SplittableRandom random = randomOf(SALESMAN_STREAM, salesman);
+        row.append("CC;").append(documentNumberOf(salesman)).append(';')
+                .append(GeneratorFilesTest.FIRST_NAMES[random.nextInt(GeneratorFilesTest.FIRST_NAMES.length)])
+                .append(';')
+                .append(GeneratorFilesTest.LAST_NAMES[random.nextInt(GeneratorFilesTest.LAST_NAMES.length)])
+                .append('\n');
+    }
+
+    /**
+     * Returns the name of the file of sales of a salesman.
+     */
+    private String fileNameOf(int salesman) {
+        SplittableRandom names = randomOf(SALESMAN_STREAM, salesman);
+        return GeneratorFilesTest.FIRST_NAMES[names.nextInt(GeneratorFilesTest.FIRST_NAMES.length)] + "_"
+                + GeneratorFilesTest.LAST_NAMES[names.nextInt(GeneratorFilesTest.LAST_NAMES.length)] + "_"
+                + documentNumberOf(salesman) + ".csv";
+    }
+
+    /**
+     * Appends the content of the file of sales of a salesman.
+     *
+     * @return the number of sales lines appended
+     */
+    private int appendSales(StringBuilder content, int salesman, WorkloadSampler sampler) {
+        SplittableRandom random = randomOf(SALES_STREAM, salesman);
+        content.append("CC;").append(documentNumberOf(salesman)).append('\n');
+        int lines = sampler.sampleLineCount(linesPerSalesman, random);
+        for (int line = 0; line < lines; line++) {
+            sampler.appendLine(content, random);
+        }
+        return lines;
+    }
+
+    /**
+     * Returns the random generator of an element of a stream of values. The seed
+     * is mixed, since generators seeded a multiple of the golden gamma apart
+     * would produce the same sequence shifted by some values.
+     */
+    private SplittableRandom randomOf(long stream, int index) {
+        long z = seed + ((stream << 40) + index) * GOLDEN_GAMMA;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return new SplittableRandom(z ^ (z >>> 31));
+    }
+
+    /**
+     * Writes all the bytes to a channel.
+     */
+    private static void write(FileChannel channel, byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Waits for a task to finish, rethrowing its exception.
+     */
+    private static <T> T await(Future<T> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The generation of the files was interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("An error occurred while generating the files", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package com.poli.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The ShardedProcessor class splits the processing of the sales files among
+ * several processes. Every worker reads only the files of its shard, chosen by
+ * the document number of the salesman in the name of each file, with the
+ * parallel reader of {@link IngestionOptions}, and writes the totals of its
+ * salesmen and products to a partial file. A coordinator then merges the
+ * partial files of all the shards into one aggregate, from which the reports
+ * are written as usual.
+ * <p>
+ * Since every file belongs to exactly one shard and the totals are integers,
+ * the merged aggregate is the same as the one of a single process, whatever
+ * the number of shards or the order in which the partial files are merged.
+ * <p>
+ * A partial file is written with a {@link BinaryBlockWriter}:
+ * <ul>
+ * <li>header: magic number, format version, fingerprints of the catalog and the
+ * directory, shard index and shard count</li>
+ * <li>salesmen: count, then columns of document numbers, revenues in cents and
+ * line counts</li>
+ * <li>products: count, then the IDs and columns of quantities and line
+ * counts</li>
+ * </ul>
+ * Salesmen and products are stored by key rather than by ordinal, and the
+ * fingerprints make the merge fail when a worker used a different catalog or
+ * directory than the coordinator.
+ */
+public class ShardedProcessor {
+    private static final Logger LOGGER = Logger.getLogger(ShardedProcessor.class.getName());
+    private static final int MAGIC = 0x50415254;
+    private static final int VERSION = 1;
+
+    private final FileManager fileManager;
+
+    /**
+     * Creates a processor that reads the sales files with the given file manager.
+     *
+     * @param fileManager the file manager used to read the sales files
+     */
+    public ShardedProcessor(FileManager fileManager) {
+        this.fileManager = fileManager;
+    }
+
+    /**
+     * Returns the shard a salesman belongs to.
+     *
+     * @param documentNumber the document number of the salesman
+     * @param shardCount     the number of shards
+     * @return the index of the shard, between 0 and {@code shardCount - 1}
+     */
+    public static int shardOf(long documentNumber, int shardCount) {
+        long hash = documentNumber * 0x9E3779B97F4A7C15L;
+        return (int) Long.remainderUnsigned(hash ^ (hash >>> 32), shardCount);
+    }
+
+    /**
+     * Aggregates the sales files of one shard. A file belongs to the shard of the
+     * document number at the end of its name, as in
+     * {@code Ana_Castro_94337696.csv}, so the files of the other shards are not
+     * opened. Only a file whose name does not end with a document number is
+     * opened to read the one of its first line. The files of the shard are read
+     * in parallel with the given options.
+     *
+     * @param folderPath the path to the folder containing the sales files
+     * @param catalog    the catalog of available products
+     * @param directory  the directory of known salesmen
+     * @param shardIndex the index of the shard to process
+     * @param shardCount the number of shards
+     * @param options    the number of workers, the open files limit and the size
+     *                   of the ranges of large files
+     * @return the totals of the salesmen and products of the shard, or null if
+     *         the folder or the inputs are not valid
+     * @throws IllegalArgumentException if the shard index is out of range
+     */
+    public SalesAggregate processShard(String folderPath, ProductCatalog catalog, SalesmanDirectory directory,
+            int shardIndex, int shardCount, IngestionOptions options) {
+        checkShard(shardIndex, shardCount);
+        File[] files = fileManager.listSalesFiles(folderPath, catalog, directory);
+        if (files == null) {
+            return null;
+        }
+        List<File> shardFiles = new ArrayList<>();
+        for (File file : files) {
+            long documentNumber = documentNumberOf(file.getName());
+            if (documentNumber < 0) {
+                documentNumber = fileManager.readSalesmanDocument(file);
+            }
+            if (documentNumber >= 0 && shardOf(documentNumber, shardCount) == shardIndex) {
+                shardFiles.add(file);
+            }
+        }
+        SalesAggregator aggregator = new SalesAggregator(catalog, directory);
+        for (FileContribution contribution : fileManager.readContributions(shardFiles.toArray(new File[0]), catalog,
+                directory, options)) {
+            if (contribution != null) {
+                contribution.applyTo(aggregator, 1);
+            }
+        }
+        LOGGER.log(Level.INFO, "Shard {0} of {1}: {2} of {3} files processed",
+                new Object[] { shardIndex, shardCount, shardFiles.size(), files.length });
+        return aggregator.getAggregate();
+    }
+
+    /**
+     * Returns the document number at the end of the name of a sales file, before
+     * its extensions.
+     *
+     * @param fileName the name of the file
+     * @return the document number, or -1 if the name does not end with one
+     */
+    static long documentNumberOf(String fileName) {
+        int start = fileName.lastIndexOf('_') + 1;
+        int end = fileName.indexOf('.', start);
+        if (end < 0) {
+            end = fileName.length();
+        }
+        if (end == start || end - start > 18) {
+            return -1;
+        }
+        long documentNumber = 0;
+        for (int i = start; i < end; i++) {
+            char c = fileName.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            documentNumber = documentNumber * 10 + (c - '0');
+        }
+        return documentNumber;
+    }
+
+    /**
+     * Writes the totals of a shard to a partial file. The file is written next to
+     * its destination and then moved into place, so the coordinator never sees a
+     * partial file that is only half written.
+     *
+     * @param path       the path of the partial file
+     * @param aggregate  the totals of the shard
+     * @param shardIndex the index of the shard
+     * @param shardCount the number of shards
+     * @throws IOException if the file cannot be written
+     */
+    public void writePartial(Path path, SalesAggregate aggregate, int shardIndex, int shardCount)
+            throws IOException {
+        checkShard(shardIndex, shardCount);
+        int salesmanCount = aggregate.getSalesmanCount();
+        long[] documents = new long[salesmanCount];
+        long[] revenues = new long[salesmanCount];
+        long[] salesmanLines = new long[salesmanCount];
+        for (int i = 0; i < salesmanCount; i++) {
+            documents[i] = aggregate.getSalesman(i).getDocumentNumber();
+            revenues[i] = aggregate.getSalesmanRevenueCents(i);
+            salesmanLines[i] = aggregate.getSalesmanLines(i);
+        }
+        int productCount = aggregate.getProductCount();
+        long[] quantities = new long[productCount];
+        long[] productLines = new long[productCount];
+        for (int i = 0; i < productCount; i++) {
+            quantities[i] = aggregate.getProductQuantity(i);
+            productLines[i] = aggregate.getProductLines(i);
+        }
+
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        Path temporary = ReportFileWriter.createTemporaryFile(path);
+        try (BinaryBlockWriter writer = new BinaryBlockWriter(temporary)) {
+            writer.writeInt(MAGIC);
+            writer.writeInt(VERSION);
+            writer.writeLong(aggregate.getCatalog().fingerprint());
+            writer.writeLong(aggregate.getDirectory().fingerprint());
+            writer.writeInt(shardIndex);
+            writer.writeInt(shardCount);
+            writer.writeInt(salesmanCount);
+            writer.writeLongs(documents, 0, salesmanCount);
+            writer.writeLongs(revenues, 0, salesmanCount);
+            writer.writeLongs(salesmanLines, 0, salesmanCount);
+            writer.writeInt(productCount);
+            for (int i = 0; i < productCount; i++) {
+                writer.writeString(aggregate.getProduct(i).getProductId());
+            }
+            writer.writeLongs(quantities, 0, productCount);
+            writer.writeLongs(productLines, 0, productCount);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Merges the partial files of all the shards into one aggregate.
+     *
+     * @param paths     the paths of the partial files, one per shard, in any order
+     * @param catalog   the catalog of available products
+     * @param directory the directory of known salesmen
+     * @return the totals of all the salesmen and products
+     * @throws IOException if a file cannot be read, is not a partial file of a
+     *                     supported version, was computed with another catalog or
+     *                     directory, or the files do not cover every shard exactly
+     *                     once
+     */
+    public SalesAggregate mergePartials(List<Path> paths, ProductCatalog catalog, SalesmanDirectory directory)
+            throws IOException {
+        SalesAggregator aggregator = new SalesAggregator(catalog, directory);
+        boolean[] merged = new boolean[paths.size()];
+        for (Path path : paths) {
+            int shardIndex = mergePartial(path, aggregator, catalog, directory, paths.size());
+            if (merged[shardIndex]) {
+                throw new IOException("Shard " + shardIndex + " is merged more than once");
+            }
+            merged[shardIndex] = true;
+        }
+        LOGGER.log(Level.INFO, "{0} partial files merged", paths.size());
+        return aggregator.getAggregate();
+    }
+
+    /**
+     * Adds the totals of one partial file to an aggregator.
+     *
+     * @return the index of the shard of the file
+     */
+    private int mergePartial(Path path, SalesAggregator aggregator, ProductCatalog catalog,
+            SalesmanDirectory directory, int shardCount) throws IOException {
+        try (BinaryBlockReader reader = new BinaryBlockReader(path)) {
+            if (reader.readInt() != MAGIC) {
+                throw new IOException(path + " is not a partial sales file");
+            }
+            int version = reader.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported partial sales file version " + version);
+            }
+            if (reader.readLong() != catalog.fingerprint() || reader.readLong() != directory.fingerprint()) {
+                throw new IOException(path + " was computed with another catalog of products or salesmen");
+            }
+            int shardIndex = reader.readInt();
+            int fileShardCount = reader.readInt();
+            if (fileShardCount != shardCount || shardIndex < 0 || shardIndex >= shardCount) {
+                throw new IOException(path + " is shard " + shardIndex + " of " + fileShardCount + ", expected one of "
+                        + shardCount + " shards");
+            }
+
+            int salesmanCount = readCount(reader, directory.size());
+            long[] documents = new long[salesmanCount];
+            long[] revenues = new long[salesmanCount];
+            long[] salesmanLines = new long[salesmanCount];
+            reader.readLongs(documents, 0, salesmanCount);
+            reader.readLongs(revenues, 0, salesmanCount);
+            reader.readLongs(salesmanLines, 0, salesmanCount);
+            for (int i = 0; i < salesmanCount; i++) {
+                int ordinal = directory.ordinalOf(documents[i]);
+                if (ordinal < 0) {
+                    throw new IOException(path + " refers to unknown salesman " + documents[i]);
+                }
+                aggregator.addSalesmanTotals(ordinal, revenues[i], salesmanLines[i]);
+            }
+
+            int productCount = readCount(reader, catalog.size());
+            int[] productOrdinals = new int[productCount];
+            for (int i = 0; i < productCount; i++) {
+                String productId = reader.readString();
+                productOrdinals[i] = catalog.ordinalOf(productId);
+                if (productOrdinals[i] < 0) {
+                    throw new IOException(path + " refers to unknown product " + productId);
+                }
+            }
+            long[] quantities = new long[productCount];
+            long[] productLines = new long[productCount];
+            reader.readLongs(quantities, 0, productCount);
+            reader.readLongs(productLines, 0, productCount);
+            for (int i = 0; i < productCount; i++) {
+                aggregator.addProductTotals(productOrdinals[i], quantities[i], productLines[i]);
+            }
+            return shardIndex;
+        }
+    }
+
+    /**
+     * Reads a count and checks it is not larger than the given maximum.
+     */
+    private static int readCount(BinaryBlockReader reader, int max) throws IOException {
+        int count = reader.readInt();
+        if (count < 0 || count > max) {
+            throw new IOException("Corrupted partial sales file, invalid count " + count);
+        }
+        return count;
+    }
+
+    /**
+     * Checks the index and count of a shard.
+     */
+    private static void checkShard(int shardIndex, int shardCount) {
+        if (shardCount < 1 || shardIndex < 0 || shardIndex >= shardCount) {
+            throw new IllegalArgumentException("Invalid shard " + shardIndex + " of " + shardCount);
+        }
+    }
+}
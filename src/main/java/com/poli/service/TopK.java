@@ -0,0 +1,130 @@
+package com.poli.service;
+
+/**
+ * The TopK class selects the k best entries of a stream of primitive keys with
+ * a bounded min-heap, in O(n log k) time and with memory for k entries only.
+ * Entries are ranked by key, highest first, and ties are broken by the lowest
+ * tie breaker, so the selection is deterministic whatever the order in which
+ * entries are offered.
+ */
+public class TopK {
+    private final int capacity;
+    private final long[] keys;
+    private final int[] tieBreakers;
+    private int size;
+
+    /**
+     * Creates a selection of at most k entries.
+     *
+     * @param capacity the number of entries to keep, at least 0
+     */
+    public TopK(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("The number of entries to keep cannot be negative");
+        }
+        this.capacity = capacity;
+        this.keys = new long[capacity];
+        this.tieBreakers = new int[capacity];
+    }
+
+    /**
+     * Offers an entry to the selection. It is kept if there is room or if it
+     * ranks better than the worst entry kept so far, which is then dropped.
+     *
+     * @param key        the key of the entry, higher is better
+     * @param tieBreaker the tie breaker of the entry, lower is better
+     */
+    public void offer(long key, int tieBreaker) {
+        if (size < capacity) {
+            keys[size] = key;
+            tieBreakers[size] = tieBreaker;
+            siftUp(size++);
+        } else if (capacity > 0 && isBetter(key, tieBreaker, keys[0], tieBreakers[0])) {
+            keys[0] = key;
+            tieBreakers[0] = tieBreaker;
+            siftDown(0, size);
+        }
+    }
+
+    /**
+     * Returns the number of entries kept.
+     *
+     * @return the number of entries kept
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the tie breakers of the entries kept, best first. The selection is
+     * emptied.
+     *
+     * @return the tie breakers of the selected entries, best first
+     */
+    public int[] drainTieBreakers() {
+        int count = size;
+        while (size > 1) {
+            swap(0, --size);
+            siftDown(0, size);
+        }
+        size = 0;
+        int[] ranked = new int[count];
+        System.arraycopy(tieBreakers, 0, ranked, 0, count);
+        return ranked;
+    }
+
+    /**
+     * Checks if an entry ranks better than another.
+     */
+    private static boolean isBetter(long key, int tieBreaker, long otherKey, int otherTieBreaker) {
+        return key > otherKey || (key == otherKey && tieBreaker < otherTieBreaker);
+    }
+
+    /**
+     * Moves an entry up until its parent ranks better than it.
+     */
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!isBetter(keys[parent], tieBreakers[parent], keys[index], tieBreakers[index])) {
+                return;
+            }
+            swap(parent, index);
+            index = parent;
+        }
+    }
+
+    /**
+     * Moves an entry down until both children rank better than it.
+     */
+    private void siftDown(int index, int limit) {
+        while (true) {
+            int worst = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < limit && isBetter(keys[worst], tieBreakers[worst], keys[left], tieBreakers[left])) {
+                worst = left;
+            }
+            if (right < limit && isBetter(keys[worst], tieBreakers[worst], keys[right], tieBreakers[right])) {
+                worst = right;
+            }
+            if (worst == index) {
+                return;
+            }
+            swap(index, worst);
+            index = worst;
+        }
+    }
+
+    /**
+     * Swaps two entries of the heap.
+     */
+    private void swap(int first, int second) {
+        long key = keys[first];
+        keys[first] = keys[second];
+        keys[second] = key;
+        int tieBreaker = tieBreakers[first];
+        tieBreakers[first] = tieBreakers[second];
+        tieBreakers[second] = tieBreaker;
+    }
+}
@@ -0,0 +1,205 @@
+package com.poli.service;
+
+/**
+ * The WorkloadProfile class describes the shape of the generated sales files:
+ * how popular every product is, how the number of lines is spread among the
+ * salesmen and how many lines are malformed.
+ * <ul>
+ * <li>the popularity of the products follows a Zipf distribution with the given
+ * exponent, product 1 being the most popular; 0 draws them uniformly</li>
+ * <li>a share of heavy salesmen have files with many times the usual number of
+ * lines</li>
+ * <li>a share of salesmen have tiny files, with at most two lines</li>
+ * <li>a share of the lines are malformed: unknown product IDs, negative
+ * or zero quantities, wrong field counts or non-numeric values</li>
+ * </ul>
+ */
+public class WorkloadProfile {
+    private double zipfExponent;
+    private double heavySalesmanShare;
+    private int heavyLineFactor = 100;
+    private double tinyFileShare;
+    private double malformedLineShare;
+
+    /**
+     * Returns the profile of the original generator: uniform products, the same
+     * number of lines for every salesman and no malformed lines.
+     *
+     * @return a uniform profile
+     */
+    public static WorkloadProfile uniform() {
+        return new WorkloadProfile();
+    }
+
+    /**
+     * Returns a profile shaped like real traffic: a few hot products, one salesman
+     * in a hundred with a hundred times the usual lines and half of the files
+     * tiny.
+     *
+     * @return a skewed profile
+     */
+    public static WorkloadProfile skewed() {
+        return new WorkloadProfile().setZipfExponent(1.0).setHeavySalesmanShare(0.01).setTinyFileShare(0.5);
+    }
+
+    /**
+     * Returns the skewed profile with one line in a hundred malformed.
+     *
+     * @return a skewed profile with malformed lines
+     */
+    public static WorkloadProfile faulty() {
+        return skewed().setMalformedLineShare(0.01);
+    }
+
+    /**
+     * Returns one of the predefined profiles by name.
+     *
+     * @param name {@code uniform}, {@code skewed} or {@code faulty}
+     * @return the profile
+     * @throws IllegalArgumentException if there is no profile with that name
+     */
+    public static WorkloadProfile named(String name) {
+        switch (name) {
+            case "uniform":
+                return uniform();
+            case "skewed":
+                return skewed();
+            case "faulty":
+                return faulty();
+            default:
+                throw new IllegalArgumentException("Unknown workload profile " + name);
+        }
+    }
+
+    /**
+     * Returns the exponent of the Zipf distribution of the products.
+     *
+     * @return the exponent, 0 when the products are uniform
+     */
+    public double getZipfExponent() {
+        return zipfExponent;
+    }
+
+    /**
+     * Sets the exponent of the Zipf distribution of the products.
+     *
+     * @param zipfExponent the exponent, 0 for uniform products
+     * @return the updated WorkloadProfile object
+     */
+    public WorkloadProfile setZipfExponent(double zipfExponent) {
+        if (!(zipfExponent >= 0 && zipfExponent <= 10)) {
+            throw new IllegalArgumentException("The Zipf exponent must be between 0 and 10");
+        }
+        this.zipfExponent = zipfExponent;
+        return this;
+    }
+
+    /**
+     * Returns the share of salesmen with heavy files.
+     *
+     * @return the share of heavy salesmen
+     */
+    public double getHeavySalesmanShare() {
+        return heavySalesmanShare;
+    }
+
+    /**
+     * Sets the share of salesmen with heavy files.
+     *
+     * @param heavySalesmanShare the share of heavy salesmen, between 0 and 1
+     * @return the updated WorkloadProfile object
+     */
+    public WorkloadProfile setHeavySalesmanShare(double heavySalesmanShare) {
+        this.heavySalesmanShare = checkShare(heavySalesmanShare);
+        return this;
+    }
+
+    /**
+     * Returns how many times the usual number of lines a heavy file has.
+     *
+     * @return the factor of the lines of heavy files
+     */
+    public int getHeavyLineFactor() {
+        return heavyLineFactor;
+    }
+
+    /**
+     * Sets how many times the usual number of lines a heavy file has.
+     *
+     * @param heavyLineFactor the factor of the lines of heavy files, at least 1
+     * @return the updated WorkloadProfile object
+     */
+    public WorkloadProfile setHeavyLineFactor(int heavyLineFactor) {
+        if (heavyLineFactor < 1) {
+            throw new IllegalArgumentException("The heavy line factor must be at least 1");
+        }
+        this.heavyLineFactor = heavyLineFactor;
+        return this;
+    }
+
+    /**
+     * Returns the share of salesmen with tiny files.
+     *
+     * @return the share of tiny files
+     */
+    public double getTinyFileShare() {
+        return tinyFileShare;
+    }
+
+    /**
+     * Sets the share of salesmen with tiny files.
+     *
+     * @param tinyFileShare the share of tiny files, between 0 and 1
+     * @return the updated WorkloadProfile object
+     */
+    public WorkloadProfile setTinyFileShare(double tinyFileShare) {
+        this.tinyFileShare = checkShare(tinyFileShare);
+        return this;
+    }
+
+    /**
+     * Returns the share of malformed lines.
+     *
+     * @return the share of malformed lines
+     */
+    public double getMalformedLineShare() {
+        return malformedLineShare;
+    }
+
+    /**
+     * Sets the share of malformed lines.
+     *
+     * @param malformedLineShare the share of malformed lines, between 0 and 1
+     * @return the updated WorkloadProfile object
+     */
+    public WorkloadProfile setMalformedLineShare(double malformedLineShare) {
+        this.malformedLineShare = checkShare(malformedLineShare);
+        return this;
+    }
+
+    /**
+     * Checks a share is between 0 and 1.
+     */
+    private static double checkShare(double share) {
+        if (!(share >= 0 && share <= 1)) {
+            throw new IllegalArgumentException("A share must be between 0 and 1");
+        }
+        return share;
+    }
+
+    /**
+     * Returns a string representation of the WorkloadProfile object.
+     *
+     * @return a string representation of the WorkloadProfile object
+     */
+    @Override
+    public String toString() {
+        return "WorkloadProfile{" +
+                "zipfExponent=" + zipfExponent +
+                ", heavySalesmanShare=" + heavySalesmanShare +
+                ", heavyLineFactor=" + heavyLineFactor +
+                ", tinyFileShare=" + tinyFileShare +
+                ", malformedLineShare=" + malformedLineShare +
+                '}';
+    }
+}
@@ -0,0 +1,114 @@
+package com.poli.service;
+
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * The WorkloadSampler class draws the size of the sales files and their lines
+ * according to a {@link WorkloadProfile}. It holds no random state of its own,
+ * so one sampler is shared by every thread and each caller passes its own
+ * generator. With a uniform profile it draws exactly the same values, in the
+ * same order, as the original generator.
+ */
+class WorkloadSampler {
+    private static final int MAX_QUANTITY = 20;
+    private static final int TINY_FILE_MAX_LINES = 2;
+
+    private final WorkloadProfile profile;
+    private final int productCount;
+    private final double[] cumulativeWeights;
+
+    /**
+     * Creates a sampler of the lines of a catalog of the given size.
+     *
+     * @param profile      the shape of the files
+     * @param productCount the number of products of the catalog, at least 1
+     */
+    WorkloadSampler(WorkloadProfile profile, int productCount) {
+        this.profile = profile;
+        this.productCount = productCount;
+        if (profile.getZipfExponent() > 0) {
+            cumulativeWeights = new double[productCount];
+            double total = 0;
+            for (int rank = 1; rank <= productCount; rank++) {
+                total += 1 / Math.pow(rank, profile.getZipfExponent());
+                cumulativeWeights[rank - 1] = total;
+            }
+        } else {
+            cumulativeWeights = null;
+        }
+    }
+
+    /**
+     * Draws the number of lines of a file.
+     *
+     * @param lines  the usual number of lines of a file
+     * @param random the generator of the file
+     * @return the number of lines of the file
+     */
+    int sampleLineCount(int lines, RandomGenerator random) {
+        if (profile.getHeavySalesmanShare() == 0 && profile.getTinyFileShare() == 0) {
+            return lines;
+        }
+        double kind = random.nextDouble();
+        if (kind < profile.getHeavySalesmanShare()) {
+            return (int) Math.min((long) lines * profile.getHeavyLineFactor(), Integer.MAX_VALUE);
+        }
+        if (kind < profile.getHeavySalesmanShare() + profile.getTinyFileShare()) {
+            return random.nextInt(TINY_FILE_MAX_LINES + 1);
+        }
+        return lines;
+    }
+
+    /**
+     * Appends a sales line, ended by a line break.
+     *
+     * @param line   the builder of the file
+     * @param random the generator of the file
+     */
+    void appendLine(StringBuilder line, RandomGenerator random) {
+        if (profile.getMalformedLineShare() > 0 && random.nextDouble() < profile.getMalformedLineShare()) {
+            appendMalformedLine(line, random);
+        } else {
+            line.append(sampleProduct(random)).append(';').append(random.nextInt(MAX_QUANTITY) + 1);
+        }
+        line.append('\n');
+    }
+
+    /**
+     * Draws the ID of a product.
+     */
+    private int sampleProduct(RandomGenerator random) {
+        if (cumulativeWeights == null) {
+            return random.nextInt(productCount) + 1;
+        }
+        double target = random.nextDouble() * cumulativeWeights[productCount - 1];
+        int index = Arrays.binarySearch(cumulativeWeights, target);
+        return (index >= 0 ? index : Math.min(-index - 1, productCount - 1)) + 1;
+    }
+
+    /**
+     * Appends one of the kinds of malformed lines, chosen uniformly.
+     */
+    private void appendMalformedLine(StringBuilder line, RandomGenerator random) {
+        switch (random.nextInt(4)) {
+            case 0:
+                line.append(productCount + 1 + random.nextInt(productCount)).append(';')
+                        .append(random.nextInt(MAX_QUANTITY) + 1);
+                break;
+            case 1:
+                line.append(sampleProduct(random)).append(';').append(-random.nextInt(MAX_QUANTITY + 1));
+                break;
+            case 2:
+                line.append(sampleProduct(random));
+                if (random.nextBoolean()) {
+                    line.append(';').append(random.nextInt(MAX_QUANTITY) + 1).append(';')
+                            .append(random.nextInt(MAX_QUANTITY) + 1);
+                }
+                break;
+            default:
+                line.append(sampleProduct(random)).append(';').append(random.nextBoolean() ? "abc" : "1.5x");
+                break;
+        }
+    }
+}